@@ -1,20 +1,30 @@
 package hello.jdbc.connection;
 
+import hello.jdbc.diagnostics.Diagnostics;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static hello.jdbc.connection.ConnectionConst.*;
 
 
+/**
+ * 호출할 때마다 DriverManager 로 새 TCP 커넥션을 열지 않고
+ * 접속 정보마다 하나씩 만든 PooledDataSource 에서 빌려준다
+ * 사용한 커넥션은 close 하면 풀로 돌아간다
+ */
 @Slf4j
 public class DBConnectionUtil {
+
+    private static final Map<String, PooledDataSource> POOLS = new ConcurrentHashMap<>();
+
     public static Connection getConnection() {
         try {
-            Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
-            log.info("get connection={}, class={}", connection, connection.getClass());
+            Connection connection = getDataSource().getConnection();
+            Diagnostics.connectionAcquired(connection);
             return connection;
         } catch (SQLException e) {
 
@@ -22,4 +32,14 @@ public class DBConnectionUtil {
 
         }
     }
+
+    //ConnectionConst 설정의 풀
+    public static PooledDataSource getDataSource() {
+        return getDataSource(URL, USERNAME, PASSWORD);
+    }
+
+    public static PooledDataSource getDataSource(String url, String username, String password) {
+        return POOLS.computeIfAbsent(url + "|" + username,
+            key -> new PooledDataSource(url, username, password, PooledDataSource.DEFAULT_MAX_POOL_SIZE));
+    }
 }
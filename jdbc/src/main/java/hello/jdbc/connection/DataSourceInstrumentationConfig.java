@@ -0,0 +1,54 @@
+package hello.jdbc.connection;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 스프링 빈으로 등록된 DataSource 를 InstrumentedDataSource 로 감싼다
+ * 트랜잭션 매니저와 MemberRepositoryV3 ~ V5 가 모두 같은 빈을 주입받으므로 따로 설정할 것이 없다
+ * member.datasource.instrument=false 로 끌 수 있다
+ *
+ * member.slow-query.* 는 DataSource 마다 만드는 SlowQueryLog 설정이다
+ * 켜면 문장마다 파라미터 배열을 만들고 기본형 값을 박싱하므로 기본은 꺼져 있다 (member.slow-query.enabled=true)
+ * EXPLAIN 은 감싸기 전의 DataSource 로 실행한다
+ */
+@Configuration
+@ConditionalOnProperty(name = "member.datasource.instrument", matchIfMissing = true)
+public class DataSourceInstrumentationConfig {
+
+    @Bean
+    static DataSourceMetrics dataSourceMetrics() {
+        return new DataSourceMetrics();
+    }
+
+    //BeanPostProcessor 는 다른 빈보다 먼저 만들어지므로 static 으로 등록한다
+    @Bean
+    static BeanPostProcessor instrumentedDataSourcePostProcessor(
+        DataSourceMetrics dataSourceMetrics,
+        @Value("${member.slow-query.enabled:false}") boolean slowQueryEnabled,
+        @Value("${member.slow-query.threshold:200ms}") Duration threshold,
+        @Value("${member.slow-query.masked-columns:}") List<String> maskedColumns,
+        @Value("${member.slow-query.max-per-second:5}") int maxPerSecond,
+        @Value("${member.slow-query.explain:true}") boolean explain) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof InstrumentedDataSource)) {
+                    DataSource target = (DataSource) bean;
+                    SlowQueryLog slowQueryLog = slowQueryEnabled
+                        ? new SlowQueryLog(threshold, maskedColumns, maxPerSecond, explain ? target : null)
+                        : null;
+                    return new InstrumentedDataSource(target, dataSourceMetrics, slowQueryLog);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package hello.jdbc.connection;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * InstrumentedDataSource 가 기록하는 지연시간
+ * acquire - getConnection 대기, hold - 획득부터 close 까지, commit / rollback,
+ * statements - SQL 문장별 PreparedStatement 실행 시간
+ *
+ * SQL 별 히스토그램은 prepareStatement 할 때 한 번 찾아 두므로 실행할 때는 맵을 조회하지 않는다
+ * 서로 다른 SQL 이 MAX_STATEMENTS 를 넘으면 나머지는 OTHER 로 모은다
+ */
+@Getter
+public class DataSourceMetrics {
+
+    public static final int MAX_STATEMENTS = 1000;
+    public static final String OTHER = "<other>";
+
+    private final LatencyHistogram acquire = new LatencyHistogram();
+    private final LatencyHistogram hold = new LatencyHistogram();
+    private final LatencyHistogram commit = new LatencyHistogram();
+    private final LatencyHistogram rollback = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> statements = new ConcurrentHashMap<>();
+
+    public LatencyHistogram statement(String sql) {
+        LatencyHistogram histogram = statements.get(sql);
+        if (histogram != null) {
+            return histogram;
+        }
+        String key = statements.size() < MAX_STATEMENTS ? sql : OTHER;
+        return statements.computeIfAbsent(key, k -> new LatencyHistogram());
+    }
+
+    public Map<String, LatencyHistogram> getStatements() {
+        return Collections.unmodifiableMap(statements);
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder()
+            .append("acquire ").append(acquire.summary()).append('\n')
+            .append("hold ").append(hold.summary()).append('\n')
+            .append("commit ").append(commit.summary()).append('\n')
+            .append("rollback ").append(rollback.summary());
+        statements.forEach((sql, histogram) -> sb.append('\n').append(sql).append(' ').append(histogram.summary()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,356 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.diagnostics.TransactionEvent;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * InstrumentedDataSource 가 돌려주는 커넥션
+ * prepareStatement 는 실행 시간을 재는 InstrumentedPreparedStatement 로 감싸고,
+ * 이때 감싸는 객체 하나를 만들고 SQL 별 히스토그램을 맵에서 한 번 찾는다 (실행마다가 아니라 prepare 마다)
+ * commit / rollback 시간과 획득부터 close 까지의 보유 시간을 기록한다
+ * JFR 기록 중이면 setAutoCommit(false) 부터 commit / rollback 까지를 TransactionEvent 로 남긴다
+ * 나머지 메서드는 그대로 위임한다
+ */
+final class InstrumentedConnection implements Connection {
+
+    private final Connection delegate;
+    private final DataSourceMetrics metrics;
+    private final long acquiredAt;
+    private final SlowQueryLog slowQueryLog;
+    private boolean closed;
+    private TransactionEvent transaction;
+
+    InstrumentedConnection(Connection delegate, DataSourceMetrics metrics, long acquiredAt, SlowQueryLog slowQueryLog) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.acquiredAt = acquiredAt;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (!closed) {
+            closed = true;
+            metrics.getHold().record(System.nanoTime() - acquiredAt);
+            transaction = null;
+        }
+        delegate.close();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+
+    @Override
+    public String toString() {
+        return "Instrumented[" + delegate + "]";
+    }
+
+    @Override
+    public void abort(Executor arg) throws SQLException {
+        delegate.abort(arg);
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        delegate.clearWarnings();
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            delegate.commit();
+        } finally {
+            metrics.getCommit().record(System.nanoTime() - start);
+        }
+        endTransaction(TransactionEvent.COMMIT, System.nanoTime() - start);
+    }
+
+    @Override
+    public Array createArrayOf(String arg1, Object[] arg2) throws SQLException {
+        return delegate.createArrayOf(arg1, arg2);
+    }
+
+    @Override
+    public Blob createBlob() throws SQLException {
+        return delegate.createBlob();
+    }
+
+    @Override
+    public Clob createClob() throws SQLException {
+        return delegate.createClob();
+    }
+
+    @Override
+    public NClob createNClob() throws SQLException {
+        return delegate.createNClob();
+    }
+
+    @Override
+    public SQLXML createSQLXML() throws SQLException {
+        return delegate.createSQLXML();
+    }
+
+    @Override
+    public Statement createStatement() throws SQLException {
+        return delegate.createStatement();
+    }
+
+    @Override
+    public Statement createStatement(int arg1, int arg2) throws SQLException {
+        return delegate.createStatement(arg1, arg2);
+    }
+
+    @Override
+    public Statement createStatement(int arg1, int arg2, int arg3) throws SQLException {
+        return delegate.createStatement(arg1, arg2, arg3);
+    }
+
+    @Override
+    public Struct createStruct(String arg1, Object[] arg2) throws SQLException {
+        return delegate.createStruct(arg1, arg2);
+    }
+
+    @Override
+    public boolean getAutoCommit() throws SQLException {
+        return delegate.getAutoCommit();
+    }
+
+    @Override
+    public String getCatalog() throws SQLException {
+        return delegate.getCatalog();
+    }
+
+    @Override
+    public Properties getClientInfo() throws SQLException {
+        return delegate.getClientInfo();
+    }
+
+    @Override
+    public String getClientInfo(String arg) throws SQLException {
+        return delegate.getClientInfo(arg);
+    }
+
+    @Override
+    public int getHoldability() throws SQLException {
+        return delegate.getHoldability();
+    }
+
+    @Override
+    public DatabaseMetaData getMetaData() throws SQLException {
+        return delegate.getMetaData();
+    }
+
+    @Override
+    public int getNetworkTimeout() throws SQLException {
+        return delegate.getNetworkTimeout();
+    }
+
+    @Override
+    public String getSchema() throws SQLException {
+        return delegate.getSchema();
+    }
+
+    @Override
+    public int getTransactionIsolation() throws SQLException {
+        return delegate.getTransactionIsolation();
+    }
+
+    @Override
+    public Map<String, Class<?>> getTypeMap() throws SQLException {
+        return delegate.getTypeMap();
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return delegate.getWarnings();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return delegate.isClosed();
+    }
+
+    @Override
+    public boolean isReadOnly() throws SQLException {
+        return delegate.isReadOnly();
+    }
+
+    @Override
+    public boolean isValid(int arg) throws SQLException {
+        return delegate.isValid(arg);
+    }
+
+    @Override
+    public String nativeSQL(String arg) throws SQLException {
+        return delegate.nativeSQL(arg);
+    }
+
+    @Override
+    public CallableStatement prepareCall(String arg) throws SQLException {
+        return delegate.prepareCall(arg);
+    }
+
+    @Override
+    public CallableStatement prepareCall(String arg1, int arg2, int arg3) throws SQLException {
+        return delegate.prepareCall(arg1, arg2, arg3);
+    }
+
+    @Override
+    public CallableStatement prepareCall(String arg1, int arg2, int arg3, int arg4) throws SQLException {
+        return delegate.prepareCall(arg1, arg2, arg3, arg4);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        return new InstrumentedPreparedStatement(delegate.prepareStatement(sql), sql, metrics, slowQueryLog);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int[] arg2) throws SQLException {
+        return new InstrumentedPreparedStatement(delegate.prepareStatement(sql, arg2), sql, metrics, slowQueryLog);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, String[] arg2) throws SQLException {
+        return new InstrumentedPreparedStatement(delegate.prepareStatement(sql, arg2), sql, metrics, slowQueryLog);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int arg2) throws SQLException {
+        return new InstrumentedPreparedStatement(delegate.prepareStatement(sql, arg2), sql, metrics, slowQueryLog);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int arg2, int arg3) throws SQLException {
+        return new InstrumentedPreparedStatement(delegate.prepareStatement(sql, arg2, arg3), sql, metrics, slowQueryLog);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int arg2, int arg3, int arg4) throws SQLException {
+        return new InstrumentedPreparedStatement(delegate.prepareStatement(sql, arg2, arg3, arg4), sql, metrics, slowQueryLog);
+    }
+
+    @Override
+    public void releaseSavepoint(Savepoint arg) throws SQLException {
+        delegate.releaseSavepoint(arg);
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            delegate.rollback();
+        } finally {
+            metrics.getRollback().record(System.nanoTime() - start);
+            endTransaction(TransactionEvent.ROLLBACK, System.nanoTime() - start);
+        }
+    }
+
+    //commit 이 실패하면 이어서 호출되는 rollback 으로 남긴다
+    private void endTransaction(String outcome, long completionNanos) {
+        if (transaction != null) {
+            transaction.end(System.identityHashCode(this), outcome, completionNanos);
+            transaction = null;
+        }
+    }
+
+    @Override
+    public void rollback(Savepoint arg) throws SQLException {
+        delegate.rollback(arg);
+    }
+
+    @Override
+    public void setAutoCommit(boolean arg) throws SQLException {
+        delegate.setAutoCommit(arg);
+        if (arg) {
+            transaction = null;
+        } else if (transaction == null && TransactionEvent.isRecording()) {
+            transaction = new TransactionEvent();
+            transaction.begin();
+        }
+    }
+
+    @Override
+    public void setCatalog(String arg) throws SQLException {
+        delegate.setCatalog(arg);
+    }
+
+    @Override
+    public void setClientInfo(Properties arg) throws SQLClientInfoException {
+        delegate.setClientInfo(arg);
+    }
+
+    @Override
+    public void setClientInfo(String arg1, String arg2) throws SQLClientInfoException {
+        delegate.setClientInfo(arg1, arg2);
+    }
+
+    @Override
+    public void setHoldability(int arg) throws SQLException {
+        delegate.setHoldability(arg);
+    }
+
+    @Override
+    public void setNetworkTimeout(Executor arg1, int arg2) throws SQLException {
+        delegate.setNetworkTimeout(arg1, arg2);
+    }
+
+    @Override
+    public void setReadOnly(boolean arg) throws SQLException {
+        delegate.setReadOnly(arg);
+    }
+
+    @Override
+    public Savepoint setSavepoint() throws SQLException {
+        return delegate.setSavepoint();
+    }
+
+    @Override
+    public Savepoint setSavepoint(String arg) throws SQLException {
+        return delegate.setSavepoint(arg);
+    }
+
+    @Override
+    public void setSchema(String arg) throws SQLException {
+        delegate.setSchema(arg);
+    }
+
+    @Override
+    public void setTransactionIsolation(int arg) throws SQLException {
+        delegate.setTransactionIsolation(arg);
+    }
+
+    @Override
+    public void setTypeMap(Map<String, Class<?>> arg) throws SQLException {
+        delegate.setTypeMap(arg);
+    }
+}
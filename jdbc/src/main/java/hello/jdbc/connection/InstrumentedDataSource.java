@@ -0,0 +1,58 @@
+package hello.jdbc.connection;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 커넥션 획득 대기, 보유 시간, SQL 실행, 커밋/롤백 시간을 기록하는 DataSource 데코레이터
+ * HikariDataSource, DriverManagerDataSource 어느 쪽이든 감쌀 수 있다
+ * JFR 기록 중이면 SQL 실행(StatementEvent)과 트랜잭션(TransactionEvent)도 이벤트로 남긴다
+ * SlowQueryLog 를 주면 임계값을 넘은 PreparedStatement 실행을 파라미터와 함께 남긴다
+ *
+ * 트랜잭션 매니저와 리포지토리는 같은 (감싼) DataSource 를 써야 같은 커넥션을 공유한다
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    private final DataSourceMetrics metrics;
+    private final SlowQueryLog slowQueryLog;
+
+    public InstrumentedDataSource(DataSource targetDataSource, DataSourceMetrics metrics) {
+        this(targetDataSource, metrics, null);
+    }
+
+    //slowQueryLog 가 null 이면 파라미터를 보관하지 않는다
+    public InstrumentedDataSource(DataSource targetDataSource, DataSourceMetrics metrics, SlowQueryLog slowQueryLog) {
+        super(targetDataSource);
+        this.metrics = metrics;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = obtainTargetDataSource().getConnection();
+        long acquired = System.nanoTime();
+        metrics.getAcquire().record(acquired - start);
+        return new InstrumentedConnection(connection, metrics, acquired, slowQueryLog);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = obtainTargetDataSource().getConnection(username, password);
+        long acquired = System.nanoTime();
+        metrics.getAcquire().record(acquired - start);
+        return new InstrumentedConnection(connection, metrics, acquired, slowQueryLog);
+    }
+
+    public DataSourceMetrics getMetrics() {
+        return metrics;
+    }
+
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+}
@@ -0,0 +1,845 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.diagnostics.StatementEvent;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * 실행 시간을 SQL 별 히스토그램에 기록하고 JFR StatementEvent 를 남기는 PreparedStatement
+ * 히스토그램은 prepareStatement 할 때 정해지므로 execute() / executeQuery() / executeUpdate() / executeBatch() 는 객체를 만들지 않는다
+ * 이 객체와 히스토그램 조회 비용은 prepare 마다 한 번씩 든다
+ * SQL 을 인자로 받는 execute(String) 계열은 그 SQL 의 히스토그램을 실행할 때마다 맵에서 찾는다
+ * StatementEvent 는 JFR 기록 중이 아니면 shouldCommit 이 false 라서 JIT 가 할당을 없앤다
+ * SlowQueryLog 가 있으면 setXxx 로 바인딩한 값을 보관했다가 임계값을 넘은 실행에 붙인다 (배치는 마지막 row)
+ * 나머지 메서드는 그대로 위임한다
+ */
+final class InstrumentedPreparedStatement implements PreparedStatement {
+
+    private final PreparedStatement delegate;
+    private final String sql;
+    private final DataSourceMetrics metrics;
+    private final LatencyHistogram histogram;
+    private final SlowQueryLog slowQueryLog;
+
+    //느린 쿼리 로그를 쓸 때만 바인딩한 파라미터를 보관한다
+    private Object[] parameters;
+
+    InstrumentedPreparedStatement(PreparedStatement delegate, String sql, DataSourceMetrics metrics,
+                                  SlowQueryLog slowQueryLog) {
+        this.delegate = delegate;
+        this.sql = sql;
+        this.metrics = metrics;
+        this.histogram = metrics.statement(sql);
+        this.slowQueryLog = slowQueryLog;
+        if (slowQueryLog != null) {
+            parameters = new Object[8];
+        }
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+
+    @Override
+    public void addBatch() throws SQLException {
+        delegate.addBatch();
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        delegate.addBatch(sql);
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+        delegate.cancel();
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        delegate.clearBatch();
+    }
+
+    @Override
+    public void clearParameters() throws SQLException {
+        delegate.clearParameters();
+        if (parameters != null) {
+            Arrays.fill(parameters, null);
+        }
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        delegate.clearWarnings();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        delegate.close();
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+        delegate.closeOnCompletion();
+    }
+
+    @Override
+    public boolean execute() throws SQLException {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            return delegate.execute();
+        } finally {
+            finish(sql, start, -1, event);
+        }
+    }
+
+    @Override
+    public boolean execute(String sql) throws SQLException {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            return delegate.execute(sql);
+        } finally {
+            finishUnprepared(sql, start, -1, event);
+        }
+    }
+
+    @Override
+    public boolean execute(String sql, int[] arg2) throws SQLException {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            return delegate.execute(sql, arg2);
+        } finally {
+            finishUnprepared(sql, start, -1, event);
+        }
+    }
+
+    @Override
+    public boolean execute(String sql, String[] arg2) throws SQLException {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            return delegate.execute(sql, arg2);
+        } finally {
+            finishUnprepared(sql, start, -1, event);
+        }
+    }
+
+    @Override
+    public boolean execute(String sql, int arg2) throws SQLException {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            return delegate.execute(sql, arg2);
+        } finally {
+            finishUnprepared(sql, start, -1, event);
+        }
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long rowCount = -1;
+        try {
+            int[] rows = delegate.executeBatch();
+            rowCount = StatementEvent.rowCount(rows);
+            return rows;
+        } finally {
+            finish(sql, start, rowCount, event);
+        }
+    }
+
+    @Override
+    public ResultSet executeQuery() throws SQLException {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            return delegate.executeQuery();
+        } finally {
+            finish(sql, start, -1, event);
+        }
+    }
+
+    @Override
+    public ResultSet executeQuery(String sql) throws SQLException {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            return delegate.executeQuery(sql);
+        } finally {
+            finishUnprepared(sql, start, -1, event);
+        }
+    }
+
+    @Override
+    public int executeUpdate() throws SQLException {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long rowCount = -1;
+        try {
+            int rows = delegate.executeUpdate();
+            rowCount = rows;
+            return rows;
+        } finally {
+            finish(sql, start, rowCount, event);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String sql) throws SQLException {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long rowCount = -1;
+        try {
+            int rows = delegate.executeUpdate(sql);
+            rowCount = rows;
+            return rows;
+        } finally {
+            finishUnprepared(sql, start, rowCount, event);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String sql, int[] arg2) throws SQLException {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long rowCount = -1;
+        try {
+            int rows = delegate.executeUpdate(sql, arg2);
+            rowCount = rows;
+            return rows;
+        } finally {
+            finishUnprepared(sql, start, rowCount, event);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String sql, String[] arg2) throws SQLException {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long rowCount = -1;
+        try {
+            int rows = delegate.executeUpdate(sql, arg2);
+            rowCount = rows;
+            return rows;
+        } finally {
+            finishUnprepared(sql, start, rowCount, event);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String sql, int arg2) throws SQLException {
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long rowCount = -1;
+        try {
+            int rows = delegate.executeUpdate(sql, arg2);
+            rowCount = rows;
+            return rows;
+        } finally {
+            finishUnprepared(sql, start, rowCount, event);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return delegate.getConnection();
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        return delegate.getFetchDirection();
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        return delegate.getFetchSize();
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException {
+        return delegate.getGeneratedKeys();
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        return delegate.getMaxFieldSize();
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        return delegate.getMaxRows();
+    }
+
+    @Override
+    public ResultSetMetaData getMetaData() throws SQLException {
+        return delegate.getMetaData();
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        return delegate.getMoreResults();
+    }
+
+    @Override
+    public boolean getMoreResults(int arg) throws SQLException {
+        return delegate.getMoreResults(arg);
+    }
+
+    @Override
+    public ParameterMetaData getParameterMetaData() throws SQLException {
+        return delegate.getParameterMetaData();
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        return delegate.getQueryTimeout();
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        return delegate.getResultSet();
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        return delegate.getResultSetConcurrency();
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        return delegate.getResultSetHoldability();
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        return delegate.getResultSetType();
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        return delegate.getUpdateCount();
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return delegate.getWarnings();
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException {
+        return delegate.isCloseOnCompletion();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return delegate.isClosed();
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        return delegate.isPoolable();
+    }
+
+    @Override
+    public void setArray(int parameterIndex, Array x) throws SQLException {
+        delegate.setArray(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<Array>");
+        }
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+        delegate.setAsciiStream(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<InputStream>");
+        }
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x, int arg3) throws SQLException {
+        delegate.setAsciiStream(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, "<InputStream>");
+        }
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x, long arg3) throws SQLException {
+        delegate.setAsciiStream(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, "<InputStream>");
+        }
+    }
+
+    @Override
+    public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+        delegate.setBigDecimal(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+        delegate.setBinaryStream(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<InputStream>");
+        }
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x, int arg3) throws SQLException {
+        delegate.setBinaryStream(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, "<InputStream>");
+        }
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x, long arg3) throws SQLException {
+        delegate.setBinaryStream(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, "<InputStream>");
+        }
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, InputStream x) throws SQLException {
+        delegate.setBlob(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<InputStream>");
+        }
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, Blob x) throws SQLException {
+        delegate.setBlob(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<Blob>");
+        }
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, InputStream x, long arg3) throws SQLException {
+        delegate.setBlob(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, "<InputStream>");
+        }
+    }
+
+    @Override
+    public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+        delegate.setBoolean(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setByte(int parameterIndex, byte x) throws SQLException {
+        delegate.setByte(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+        delegate.setBytes(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<byte[]>");
+        }
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader x) throws SQLException {
+        delegate.setCharacterStream(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<Reader>");
+        }
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader x, int arg3) throws SQLException {
+        delegate.setCharacterStream(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, "<Reader>");
+        }
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader x, long arg3) throws SQLException {
+        delegate.setCharacterStream(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, "<Reader>");
+        }
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Reader x) throws SQLException {
+        delegate.setClob(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<Reader>");
+        }
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Clob x) throws SQLException {
+        delegate.setClob(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<Clob>");
+        }
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Reader x, long arg3) throws SQLException {
+        delegate.setClob(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, "<Reader>");
+        }
+    }
+
+    @Override
+    public void setCursorName(String arg) throws SQLException {
+        delegate.setCursorName(arg);
+    }
+
+    @Override
+    public void setDate(int parameterIndex, Date x) throws SQLException {
+        delegate.setDate(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setDate(int parameterIndex, Date x, Calendar arg3) throws SQLException {
+        delegate.setDate(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setDouble(int parameterIndex, double x) throws SQLException {
+        delegate.setDouble(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean arg) throws SQLException {
+        delegate.setEscapeProcessing(arg);
+    }
+
+    @Override
+    public void setFetchDirection(int arg) throws SQLException {
+        delegate.setFetchDirection(arg);
+    }
+
+    @Override
+    public void setFetchSize(int arg) throws SQLException {
+        delegate.setFetchSize(arg);
+    }
+
+    @Override
+    public void setFloat(int parameterIndex, float x) throws SQLException {
+        delegate.setFloat(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setInt(int parameterIndex, int x) throws SQLException {
+        delegate.setInt(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setLong(int parameterIndex, long x) throws SQLException {
+        delegate.setLong(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setMaxFieldSize(int arg) throws SQLException {
+        delegate.setMaxFieldSize(arg);
+    }
+
+    @Override
+    public void setMaxRows(int arg) throws SQLException {
+        delegate.setMaxRows(arg);
+    }
+
+    @Override
+    public void setNCharacterStream(int parameterIndex, Reader x) throws SQLException {
+        delegate.setNCharacterStream(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<Reader>");
+        }
+    }
+
+    @Override
+    public void setNCharacterStream(int parameterIndex, Reader x, long arg3) throws SQLException {
+        delegate.setNCharacterStream(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, "<Reader>");
+        }
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, Reader x) throws SQLException {
+        delegate.setNClob(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<Reader>");
+        }
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, NClob x) throws SQLException {
+        delegate.setNClob(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<NClob>");
+        }
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, Reader x, long arg3) throws SQLException {
+        delegate.setNClob(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, "<Reader>");
+        }
+    }
+
+    @Override
+    public void setNString(int parameterIndex, String x) throws SQLException {
+        delegate.setNString(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setNull(int parameterIndex, int x) throws SQLException {
+        delegate.setNull(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, null);
+        }
+    }
+
+    @Override
+    public void setNull(int parameterIndex, int x, String arg3) throws SQLException {
+        delegate.setNull(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, null);
+        }
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x) throws SQLException {
+        delegate.setObject(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x, int arg3) throws SQLException {
+        delegate.setObject(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x, int arg3, int arg4) throws SQLException {
+        delegate.setObject(parameterIndex, x, arg3, arg4);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setPoolable(boolean arg) throws SQLException {
+        delegate.setPoolable(arg);
+    }
+
+    @Override
+    public void setQueryTimeout(int arg) throws SQLException {
+        delegate.setQueryTimeout(arg);
+    }
+
+    @Override
+    public void setRef(int parameterIndex, Ref x) throws SQLException {
+        delegate.setRef(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<Ref>");
+        }
+    }
+
+    @Override
+    public void setRowId(int parameterIndex, RowId x) throws SQLException {
+        delegate.setRowId(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<RowId>");
+        }
+    }
+
+    @Override
+    public void setSQLXML(int parameterIndex, SQLXML x) throws SQLException {
+        delegate.setSQLXML(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, "<SQLXML>");
+        }
+    }
+
+    @Override
+    public void setShort(int parameterIndex, short x) throws SQLException {
+        delegate.setShort(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setString(int parameterIndex, String x) throws SQLException {
+        delegate.setString(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setTime(int parameterIndex, Time x) throws SQLException {
+        delegate.setTime(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setTime(int parameterIndex, Time x, Calendar arg3) throws SQLException {
+        delegate.setTime(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+        delegate.setTimestamp(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setTimestamp(int parameterIndex, Timestamp x, Calendar arg3) throws SQLException {
+        delegate.setTimestamp(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setURL(int parameterIndex, URL x) throws SQLException {
+        delegate.setURL(parameterIndex, x);
+        if (parameters != null) {
+            bind(parameterIndex, x);
+        }
+    }
+
+    @Override
+    public void setUnicodeStream(int parameterIndex, InputStream x, int arg3) throws SQLException {
+        delegate.setUnicodeStream(parameterIndex, x, arg3);
+        if (parameters != null) {
+            bind(parameterIndex, "<InputStream>");
+        }
+    }
+
+    private void finish(String sql, long start, long rowCount, StatementEvent event) {
+        long elapsed = System.nanoTime() - start;
+        histogram.record(elapsed);
+        event.end(sql, rowCount);
+        if (slowQueryLog != null && slowQueryLog.isSlow(elapsed)) {
+            slowQueryLog.capture(sql, parameters, elapsed);
+        }
+    }
+
+    //prepare 한 SQL 이 아니라 인자로 받은 SQL 을 실행했으므로 그 SQL 의 히스토그램에 남기고 바인딩 값은 붙이지 않는다
+    private void finishUnprepared(String sql, long start, long rowCount, StatementEvent event) {
+        long elapsed = System.nanoTime() - start;
+        metrics.statement(sql).record(elapsed);
+        event.end(sql, rowCount);
+        if (slowQueryLog != null && slowQueryLog.isSlow(elapsed)) {
+            slowQueryLog.capture(sql, null, elapsed);
+        }
+    }
+
+    private void bind(int parameterIndex, Object value) {
+        if (parameterIndex > parameters.length) {
+            parameters = Arrays.copyOf(parameters, Math.max(parameterIndex, parameters.length * 2));
+        }
+        parameters[parameterIndex - 1] = value;
+    }
+}
@@ -0,0 +1,489 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * DriverManager 로 만든 커넥션을 재사용하는 풀
+ *
+ * 커넥션 대여는 락 없이 처리한다
+ * 1. 이 스레드가 마지막에 반납한 커넥션 (ThreadLocal 목록)
+ * 2. 전체 커넥션 목록(CopyOnWriteArrayList)을 훑으면서 상태를 CAS 로 선점
+ * 3. 최대 개수보다 적으면 새로 만든다
+ * 4. 그래도 없으면 SynchronousQueue 에서 다른 스레드가 반납하는 커넥션을 직접 넘겨받는다
+ *
+ * 오래 쉬었던 커넥션은 빌려주기 전에 isValid 로 확인하고, 실패하면 버린다
+ * leakDetectionThreshold 보다 오래 반납하지 않은 커넥션은 빌려간 위치와 함께 경고를 남긴다
+ * 반납할 때 autoCommit 을 끈 채로 돌아온 커넥션은 롤백하고 autoCommit 을 되돌린다
+ */
+@Slf4j
+public class PooledDataSource implements DataSource, AutoCloseable {
+
+    public static final int DEFAULT_MAX_POOL_SIZE = 10;
+    public static final Duration DEFAULT_CONNECTION_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final long VALIDATION_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+    private static final int THREAD_LOCAL_SIZE = 16;
+    private static final int STATEMENT_PRUNE_SIZE = 32;
+
+    private static final int NOT_IN_USE = 0;
+    private static final int IN_USE = 1;
+    private static final int REMOVED = -1;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int maxPoolSize;
+    private final long connectionTimeoutNanos;
+    private final long leakDetectionNanos;
+
+    private final CopyOnWriteArrayList<Entry> shared = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<List<Entry>> local = ThreadLocal.withInitial(() -> new ArrayList<>(THREAD_LOCAL_SIZE));
+    private final SynchronousQueue<Entry> handoff = new SynchronousQueue<>(true);
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+
+    private PrintWriter logWriter;
+    private int loginTimeout;
+
+    public PooledDataSource(String url, String username, String password, int maxPoolSize) {
+        this(url, username, password, maxPoolSize, DEFAULT_CONNECTION_TIMEOUT, Duration.ZERO);
+    }
+
+    //leakDetectionThreshold 가 0 이면 누수 감지를 하지 않는다
+    public PooledDataSource(String url, String username, String password, int maxPoolSize,
+                            Duration connectionTimeout, Duration leakDetectionThreshold) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxPoolSize = maxPoolSize;
+        this.connectionTimeoutNanos = connectionTimeout.toNanos();
+        this.leakDetectionNanos = leakDetectionThreshold.toNanos();
+
+        if (leakDetectionNanos > 0) {
+            this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "pool-housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(TimeUnit.MILLISECONDS.toNanos(50), leakDetectionNanos / 2);
+            housekeeper.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.NANOSECONDS);
+        } else {
+            this.housekeeper = null;
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("pool is closed url=" + url);
+        }
+        Entry entry = borrow(System.nanoTime() + connectionTimeoutNanos);
+        entry.borrowedAt = System.nanoTime();
+        if (leakDetectionNanos > 0) {
+            entry.borrowedFrom = new Exception("connection borrowed here");
+            entry.leakReported = false;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new ConnectionHandler(entry));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("pool is bound to one user");
+    }
+
+    public int getTotalConnections() {
+        return total.get();
+    }
+
+    public int getIdleConnections() {
+        int idle = 0;
+        for (Entry entry : shared) {
+            if (entry.state.get() == NOT_IN_USE) {
+                idle++;
+            }
+        }
+        return idle;
+    }
+
+    public int getThreadsAwaiting() {
+        return waiters.get();
+    }
+
+    public long getCreated() {
+        return created.sum();
+    }
+
+    public long getLeaks() {
+        return leaks.sum();
+    }
+
+    public long getValidationFailures() {
+        return validationFailures.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (housekeeper != null) {
+            housekeeper.shutdownNow();
+        }
+        //사용 중인 커넥션은 반납할 때 닫힌다
+        for (Entry entry : shared) {
+            if (entry.state.compareAndSet(NOT_IN_USE, IN_USE)) {
+                remove(entry);
+            }
+        }
+    }
+
+    private Entry borrow(long deadline) throws SQLException {
+        //이 스레드가 최근에 반납한 커넥션부터 확인한다
+        List<Entry> recent = local.get();
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            Entry entry = recent.remove(i);
+            if (entry.tryReserve() && validate(entry)) {
+                return entry;
+            }
+        }
+
+        try {
+            while (true) {
+                for (Entry entry : shared) {
+                    if (entry.tryReserve() && validate(entry)) {
+                        return entry;
+                    }
+                }
+                //커넥션 생성과 검증은 오래 걸릴 수 있으므로 대기자로 등록하지 않은 채로 한다
+                //대기자가 있으면 반납하는 스레드가 넘겨줄 때까지 돌기 때문이다
+                Entry created = tryCreate();
+                if (created != null) {
+                    return created;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new SQLTransientConnectionException("connection is not available, request timed out after "
+                        + TimeUnit.NANOSECONDS.toMillis(connectionTimeoutNanos) + "ms total=" + total.get());
+                }
+                Entry entry = awaitHandoff(remaining);
+                if (entry != null && validate(entry)) {
+                    return entry;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for a connection", e);
+        }
+    }
+
+    //handoff 를 기다리는 동안만 대기자로 센다. 선점한 커넥션을 반환하고 검증은 호출한 쪽에서 한다
+    private Entry awaitHandoff(long timeoutNanos) throws InterruptedException {
+        waiters.incrementAndGet();
+        try {
+            //등록하기 전에 반납된 커넥션은 넘겨받을 수 없으므로 등록한 뒤에 목록을 한번 더 훑는다
+            for (Entry entry : shared) {
+                if (entry.tryReserve()) {
+                    return entry;
+                }
+            }
+            Entry entry = handoff.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+            return entry != null && entry.tryReserve() ? entry : null;
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    private Entry tryCreate() throws SQLException {
+        while (true) {
+            int current = total.get();
+            if (current >= maxPoolSize) {
+                return null;
+            }
+            if (total.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        try {
+            Entry entry = new Entry(DriverManager.getConnection(url, username, password));
+            shared.add(entry);
+            created.increment();
+            return entry;
+        } catch (SQLException e) {
+            total.decrementAndGet();
+            throw e;
+        }
+    }
+
+    //오래 쉰 커넥션만 확인한다. 실패하면 버리고 false
+    private boolean validate(Entry entry) {
+        if (System.nanoTime() - entry.lastAccess <= VALIDATION_IDLE_NANOS) {
+            return true;
+        }
+        try {
+            if (entry.raw.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return true;
+            }
+        } catch (SQLException e) {
+            log.info("커넥션 검증 실패 connection={}", entry.raw, e);
+        }
+        validationFailures.increment();
+        remove(entry);
+        return false;
+    }
+
+    private void release(Entry entry, boolean resetAutoCommit, boolean broken) {
+        if (broken) {
+            remove(entry);
+            return;
+        }
+        if (resetAutoCommit) {
+            //커밋하지 않은 변경이 다음 사용자에게 넘어가지 않게 한다
+            try {
+                entry.raw.rollback();
+                entry.raw.setAutoCommit(true);
+            } catch (SQLException e) {
+                log.info("커넥션 초기화 실패 connection={}", entry.raw, e);
+                remove(entry);
+                return;
+            }
+        }
+        entry.borrowedFrom = null;
+        entry.lastAccess = System.nanoTime();
+        entry.state.set(NOT_IN_USE);
+        if (closed) {
+            if (entry.state.compareAndSet(NOT_IN_USE, IN_USE)) {
+                remove(entry);
+            }
+            return;
+        }
+
+        //기다리는 스레드가 있으면 직접 넘겨준다
+        for (int i = 0; waiters.get() > 0; i++) {
+            if (entry.state.get() != NOT_IN_USE || handoff.offer(entry)) {
+                return;
+            }
+            if ((i & 0xff) == 0xff) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+            } else {
+                Thread.yield();
+            }
+        }
+        List<Entry> recent = local.get();
+        if (recent.size() < THREAD_LOCAL_SIZE) {
+            recent.add(entry);
+        }
+    }
+
+    private void remove(Entry entry) {
+        if (entry.state.getAndSet(REMOVED) == REMOVED) {
+            return;
+        }
+        shared.remove(entry);
+        total.decrementAndGet();
+        try {
+            entry.raw.close();
+        } catch (SQLException e) {
+            log.info("커넥션 종료 실패 connection={}", entry.raw, e);
+        }
+    }
+
+    private void detectLeaks() {
+        long now = System.nanoTime();
+        for (Entry entry : shared) {
+            Exception borrowedFrom = entry.borrowedFrom;
+            if (entry.state.get() == IN_USE && !entry.leakReported && borrowedFrom != null
+                && now - entry.borrowedAt > leakDetectionNanos) {
+                entry.leakReported = true;
+                leaks.increment();
+                log.warn("커넥션 누수 의심 connection={} heldMillis={}",
+                    entry.raw, TimeUnit.NANOSECONDS.toMillis(now - entry.borrowedAt), borrowedFrom);
+            }
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        this.loginTimeout = seconds;
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return loginTimeout;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("not a wrapper for " + iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    private static final class Entry {
+        private final Connection raw;
+        private final AtomicInteger state = new AtomicInteger(IN_USE);
+        private volatile long lastAccess = System.nanoTime();
+        private volatile long borrowedAt;
+        private volatile Exception borrowedFrom;
+        private volatile boolean leakReported;
+
+        private Entry(Connection raw) {
+            this.raw = raw;
+        }
+
+        private boolean tryReserve() {
+            return state.compareAndSet(NOT_IN_USE, IN_USE);
+        }
+    }
+
+    /**
+     * 빌려줄 때마다 새로 만드는 커넥션 프록시
+     * close 는 물리 커넥션을 닫지 않고 풀에 반납한다. 반납한 뒤의 호출은 예외를 던진다
+     * 이 프록시로 만든 Statement 는 반납할 때 함께 닫는다. Statement 를 닫으면 그 ResultSet 도 닫힌다
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final Entry entry;
+        private boolean closed;
+        private boolean autoCommitChanged;
+        private boolean broken;
+        private final List<Statement> statements = new ArrayList<>();
+
+        private ConnectionHandler(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        closeStatements();
+                        release(entry, autoCommitChanged, broken);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + entry.raw + "]";
+                case "unwrap":
+                    if (closed) {
+                        throw new SQLException("connection is closed");
+                    }
+                    if (((Class<?>) args[0]).isInstance(entry.raw)) {
+                        return entry.raw;
+                    }
+                    break;
+                case "setAutoCommit":
+                    if (!closed && !((Boolean) args[0])) {
+                        autoCommitChanged = true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("connection is closed");
+            }
+            Object result;
+            try {
+                result = method.invoke(entry.raw, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                //08 은 연결 오류이므로 반납할 때 버린다
+                if (cause instanceof SQLException && ((SQLException) cause).getSQLState() != null
+                    && ((SQLException) cause).getSQLState().startsWith("08")) {
+                    broken = true;
+                }
+                throw cause;
+            }
+            if (result instanceof Statement) {
+                track((Statement) result);
+            }
+            return result;
+        }
+
+        private void track(Statement statement) throws SQLException {
+            //오래 들고 있는 커넥션에서 목록이 계속 커지지 않게 이미 닫은 것은 정리한다
+            if (statements.size() >= STATEMENT_PRUNE_SIZE) {
+                List<Statement> open = new ArrayList<>(statements.size() + 1);
+                for (Statement each : statements) {
+                    if (!each.isClosed()) {
+                        open.add(each);
+                    }
+                }
+                statements.clear();
+                statements.addAll(open);
+            }
+            statements.add(statement);
+        }
+
+        private void closeStatements() {
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    log.info("Statement 종료 실패 statement={}", statement, e);
+                    broken = true;
+                }
+            }
+            statements.clear();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package hello.jdbc.connection;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * SlowQueryLog 가 남긴 느린 실행 한 건
+ * parameters 는 마스킹한 뒤의 문자열이고, plan 은 EXPLAIN 을 하지 않았거나 실패하면 null 이다
+ */
+@Getter
+@ToString
+public class SlowQuery {
+
+    private final String sql;
+    private final List<String> parameters;
+    private final long elapsedNanos;
+    private final String caller;
+    private final String plan;
+
+    public SlowQuery(String sql, List<String> parameters, long elapsedNanos, String caller, String plan) {
+        this.sql = sql;
+        this.parameters = parameters;
+        this.elapsedNanos = elapsedNanos;
+        this.caller = caller;
+        this.plan = plan;
+    }
+
+    SlowQuery withPlan(String plan) {
+        return new SlowQuery(sql, parameters, elapsedNanos, caller, plan);
+    }
+}
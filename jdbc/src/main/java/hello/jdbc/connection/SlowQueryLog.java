@@ -0,0 +1,282 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 임계값을 넘은 PreparedStatement 실행을 SQL, 파라미터, 실행 시간, 호출한 곳과 함께 WARN 으로 남긴다
+ * InstrumentedDataSource 에 붙이므로 JdbcTemplate(V5) 과 직접 만든 PreparedStatement(V4_x) 를 모두 잡는다
+ * Statement 로 실행하는 SQL (파라미터 없는 JdbcTemplate.execute 등) 은 대상이 아니다
+ *
+ * maskedColumns 에 있는 컬럼에 바인딩된 값은 **** 로 남긴다. 컬럼은 SQL 에서 ? 앞의 비교식이나
+ * insert 컬럼 목록으로 찾고, SQL 마다 한 번만 계산한다. 컬럼을 찾지 못한 자리(case 식, money + ? 등)도 가린다
+ *
+ * 초당 maxPerSecond 건까지만 남기고 나머지는 건수만 센다. 다음에 남기는 로그에 suppressed 로 붙인다
+ * explainDataSource 가 있으면 별도 스레드에서 같은 파라미터로 EXPLAIN 을 실행해서 계획을 붙인다
+ * EXPLAIN 은 감싸지 않은 DataSource 로 실행해야 다시 느린 쿼리로 잡히지 않는다
+ */
+@Slf4j
+public class SlowQueryLog implements AutoCloseable {
+
+    public static final String MASK = "****";
+    static final int RECENT_SIZE = 100;
+    static final int EXPLAIN_QUEUE_SIZE = 16;
+
+    private static final Pattern INSERT = Pattern.compile(
+        "insert\\s+into\\s+[\\w.]+\\s*\\(([^)]*)\\)\\s*values\\s*\\(([^)]*)\\)");
+    private static final Pattern COMPARISON = Pattern.compile(
+        "(\\w+)\\s*(?:=|<>|!=|<=|>=|<|>|\\bin\\s*\\((?:\\s*\\?\\s*,)*|\\blike|=\\s*\\w+\\s*[-+*/])\\s*$");
+    private static final Pattern EXPLAINABLE = Pattern.compile("^\\s*(select|insert|update|delete|merge)\\b");
+
+    private final long thresholdNanos;
+    private final Set<String> maskedColumns;
+    private final int maxPerSecond;
+    private final DataSource explainDataSource;
+    private final ThreadPoolExecutor explainExecutor;
+
+    private final Map<String, boolean[]> masks = new ConcurrentHashMap<>();
+    private final LongAdder captured = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    private final AtomicLong suppressedSinceLog = new AtomicLong();
+    private final Deque<SlowQuery> recent = new ArrayDeque<>();
+
+    private long windowStart = System.nanoTime();
+    private int windowCount;
+
+    public SlowQueryLog(Duration threshold, Collection<String> maskedColumns, int maxPerSecond, DataSource explainDataSource) {
+        this.thresholdNanos = threshold.toNanos();
+        this.maskedColumns = maskedColumns.stream()
+            .map(column -> column.trim().toLowerCase(Locale.ROOT))
+            .filter(column -> !column.isEmpty())
+            .collect(Collectors.toUnmodifiableSet());
+        this.maxPerSecond = maxPerSecond;
+        this.explainDataSource = explainDataSource;
+        if (explainDataSource == null) {
+            this.explainExecutor = null;
+        } else {
+            //대기열이 차면 계획 없이 남긴다
+            this.explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(EXPLAIN_QUEUE_SIZE), r -> {
+                Thread thread = new Thread(r, "slow-query-explain");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    //실행 스레드에서 호출된다. 비율 제한을 넘으면 아무것도 만들지 않는다
+    void capture(String sql, Object[] parameters, long elapsedNanos) {
+        if (!tryAcquire(System.nanoTime())) {
+            suppressed.increment();
+            suppressedSinceLog.incrementAndGet();
+            return;
+        }
+        captured.increment();
+
+        boolean[] mask = masks.get(sql);
+        if (mask == null) {
+            mask = mask(parameterColumns(sql));
+            if (masks.size() < DataSourceMetrics.MAX_STATEMENTS) {
+                masks.put(sql, mask);
+            }
+        }
+        Object[] values = parameters == null
+            ? new Object[0]
+            : Arrays.copyOf(parameters, Math.min(mask.length, parameters.length));
+        List<String> shown = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++) {
+            shown.add(mask[i] ? MASK : String.valueOf(values[i]));
+        }
+        SlowQuery query = new SlowQuery(sql, Collections.unmodifiableList(shown), elapsedNanos, caller(), null);
+
+        if (explainExecutor != null && EXPLAINABLE.matcher(sql.toLowerCase(Locale.ROOT)).find() && bindable(values)) {
+            try {
+                explainExecutor.execute(() -> publish(query.withPlan(explain(sql, values))));
+                return;
+            } catch (RejectedExecutionException e) {
+                //EXPLAIN 이 밀려 있으면 계획 없이 남긴다
+            }
+        }
+        publish(query);
+    }
+
+    public long getCaptured() {
+        return captured.sum();
+    }
+
+    public long getSuppressed() {
+        return suppressed.sum();
+    }
+
+    //최근에 남긴 느린 쿼리 (오래된 순서)
+    public synchronized List<SlowQuery> recent() {
+        return List.copyOf(recent);
+    }
+
+    //대기 중인 EXPLAIN 을 마저 실행하고 끝낸다
+    @Override
+    public void close() throws InterruptedException {
+        if (explainExecutor != null) {
+            explainExecutor.shutdown();
+            explainExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private synchronized boolean tryAcquire(long now) {
+        if (now - windowStart >= TimeUnit.SECONDS.toNanos(1)) {
+            windowStart = now;
+            windowCount = 0;
+        }
+        if (windowCount < maxPerSecond) {
+            windowCount++;
+            return true;
+        }
+        return false;
+    }
+
+    private void publish(SlowQuery query) {
+        long skipped = suppressedSinceLog.getAndSet(0);
+        log.warn("slow query {}ms caller={} sql={} params={}{}{}",
+            TimeUnit.NANOSECONDS.toMillis(query.getElapsedNanos()), query.getCaller(), query.getSql(), query.getParameters(),
+            skipped > 0 ? " suppressed=" + skipped : "",
+            query.getPlan() == null ? "" : "\n" + query.getPlan());
+        synchronized (this) {
+            if (recent.size() == RECENT_SIZE) {
+                recent.removeFirst();
+            }
+            recent.addLast(query);
+        }
+    }
+
+    private String explain(String sql, Object[] values) {
+        try (Connection con = explainDataSource.getConnection();
+             PreparedStatement pstmt = con.prepareStatement("explain " + sql)) {
+            for (int i = 0; i < values.length; i++) {
+                pstmt.setObject(i + 1, values[i]);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (plan.length() > 0) {
+                        plan.append('\n');
+                    }
+                    plan.append(rs.getString(1));
+                }
+            }
+            return plan.toString();
+        } catch (SQLException e) {
+            log.info("explain failed sql={}", sql, e);
+            return null;
+        }
+    }
+
+    private boolean[] mask(List<String> columns) {
+        boolean[] mask = new boolean[columns.size()];
+        for (int i = 0; i < mask.length; i++) {
+            //컬럼을 알 수 없는 자리는 마스킹할 컬럼이 하나라도 설정되어 있으면 가린다
+            mask[i] = columns.get(i) == null ? !maskedColumns.isEmpty() : maskedColumns.contains(columns.get(i));
+        }
+        return mask;
+    }
+
+    //스트림, LOB 처럼 다시 바인딩할 수 없는 값이 있으면 EXPLAIN 하지 않는다
+    private static boolean bindable(Object[] values) {
+        for (Object value : values) {
+            if (value != null && !(value instanceof String || value instanceof Number
+                || value instanceof Boolean || value instanceof Date || value instanceof BigDecimal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //커넥션 래퍼, 스프링, 드라이버를 건너뛴 첫 애플리케이션 프레임
+    private static String caller() {
+        return StackWalker.getInstance().walk(frames -> frames
+            .filter(frame -> frame.getClassName().startsWith("hello.")
+                && !frame.getClassName().startsWith("hello.jdbc.connection."))
+            .findFirst()
+            .map(frame -> frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber())
+            .orElse("unknown"));
+    }
+
+    /**
+     * ? 마다 바인딩되는 컬럼 이름 (소문자), 알 수 없으면 null
+     * where member_id=?, money=money+?, member_id in (?, ?), insert into member(member_id, money) values(?, ?)
+     */
+    static List<String> parameterColumns(String sql) {
+        String lower = sql.toLowerCase(Locale.ROOT);
+        List<String> columns = new ArrayList<>();
+
+        int valuesStart = -1;
+        int valuesEnd = -1;
+        String[] insertColumns = null;
+        Matcher insert = INSERT.matcher(lower);
+        if (insert.find()) {
+            insertColumns = insert.group(1).split(",");
+            valuesStart = insert.start(2);
+            valuesEnd = insert.end(2);
+        }
+
+        boolean quoted = false;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            }
+            if (c != '?' || quoted) {
+                continue;
+            }
+            if (i >= valuesStart && i < valuesEnd) {
+                int position = valuePosition(lower, valuesStart, i);
+                columns.add(position < insertColumns.length ? insertColumns[position].trim() : null);
+                continue;
+            }
+            Matcher comparison = COMPARISON.matcher(lower.substring(0, i));
+            columns.add(comparison.find() ? comparison.group(1) : null);
+        }
+        return columns;
+    }
+
+    private static int valuePosition(String sql, int start, int index) {
+        int position = 0;
+        for (int i = start; i < index; i++) {
+            if (sql.charAt(i) == ',') {
+                position++;
+            }
+        }
+        return position;
+    }
+}
@@ -0,0 +1,37 @@
+package hello.jdbc.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+/**
+ * 리포지토리가 DataSourceUtils.getConnection 으로 커넥션을 얻는 데 걸린 시간
+ * transactional 이면 트랜잭션 동기화 매니저에 있던 커넥션을 다시 받은 것이다
+ */
+@Name("hello.jdbc.ConnectionAcquire")
+@Label("Connection Acquire")
+@Category({"Member", "JDBC"})
+@StackTrace(false)
+public class ConnectionAcquireEvent extends Event {
+
+    @Label("Connection Id")
+    private int connectionId;
+
+    @Label("Transactional")
+    private boolean transactional;
+
+    //기록 중이 아니면 아무것도 하지 않는다
+    public void end(Connection connection, DataSource dataSource) {
+        if (shouldCommit()) {
+            this.connectionId = System.identityHashCode(connection);
+            this.transactional = DataSourceUtils.isConnectionTransactional(connection, dataSource);
+            commit();
+        }
+    }
+}
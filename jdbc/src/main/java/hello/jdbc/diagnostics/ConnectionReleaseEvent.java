@@ -0,0 +1,36 @@
+package hello.jdbc.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+/**
+ * 리포지토리가 DataSourceUtils.releaseConnection 으로 커넥션을 돌려주는 데 걸린 시간
+ * transactional 이면 커넥션은 닫히지 않고 트랜잭션이 끝날 때까지 유지된다
+ */
+@Name("hello.jdbc.ConnectionRelease")
+@Label("Connection Release")
+@Category({"Member", "JDBC"})
+@StackTrace(false)
+public class ConnectionReleaseEvent extends Event {
+
+    @Label("Connection Id")
+    private int connectionId;
+
+    @Label("Transactional")
+    private boolean transactional;
+
+    public void end(Connection connection, DataSource dataSource) {
+        if (shouldCommit()) {
+            this.connectionId = System.identityHashCode(connection);
+            this.transactional = DataSourceUtils.isConnectionTransactional(connection, dataSource);
+            commit();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package hello.jdbc.diagnostics;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 링 버퍼에서 꺼낸 진단 이벤트 (읽을 때만 만든다)
+ * connectionId 는 커넥션의 identityHashCode 다. toString 을 호출하지 않기 위해 사용한다
+ * traceId 가 0 이면 샘플링된 이벤트, 0 보다 크면 추적한 트랜잭션의 이벤트다
+ */
+@Getter
+@ToString
+public class DiagnosticEvent {
+
+    public enum Type {
+        CONNECTION_ACQUIRED, UPDATE, TRANSACTION_END
+    }
+
+    private final long sequence;
+    private final long timestampNanos;
+    private final String threadName;
+    private final Type type;
+    private final long traceId;
+    private final int connectionId;
+    private final String connectionClass;
+    private final String memberId;
+    private final long value;
+
+    public DiagnosticEvent(long sequence, long timestampNanos, String threadName, Type type, long traceId,
+                           int connectionId, String connectionClass, String memberId, long value) {
+        this.sequence = sequence;
+        this.timestampNanos = timestampNanos;
+        this.threadName = threadName;
+        this.type = type;
+        this.traceId = traceId;
+        this.connectionId = connectionId;
+        this.connectionClass = connectionClass;
+        this.memberId = memberId;
+        this.value = value;
+    }
+}
@@ -0,0 +1,199 @@
+package hello.jdbc.diagnostics;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 리포지토리 호출마다 INFO 로그를 남기던 것을 대신하는 진단 기록
+ *
+ * 이벤트는 미리 만들어 둔 링 버퍼 슬롯에 필드로 기록한다. 기록할 때 문자열이나 객체를 만들지 않는다
+ * 평소에는 sampleRate 비율로만 기록하고 (기본 1%, 0 이면 끔),
+ * traceNextTransactions(n) 을 호출하면 다음 n 개 트랜잭션의 이벤트를 샘플링 없이 모두 기록한다
+ * 추적은 TransactionSynchronizationManager 를 사용하므로 스프링 트랜잭션 안의 호출(V3 이상)에만 적용된다
+ *
+ * 설정: -Dmember.diagnostics.buffer-size (기본 4096), -Dmember.diagnostics.sample-rate (기본 0.01)
+ * 실행 중에는 setSampleRate 로 바꾼다
+ */
+public abstract class Diagnostics {
+
+    private static final int BUFFER_SIZE = Integer.highestOneBit(
+        Math.max(2, Integer.getInteger("member.diagnostics.buffer-size", 4096)));
+    private static final Slot[] SLOTS = new Slot[BUFFER_SIZE];
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final AtomicLong TRACE_IDS = new AtomicLong();
+    private static final AtomicInteger PENDING_TRACES = new AtomicInteger();
+    private static final AtomicInteger ACTIVE_TRACES = new AtomicInteger();
+    private static final Object TRACE_KEY = new Object();
+
+    //기록할 확률을 int 범위로 바꿔 둔다. 0 이면 기록하지 않는다
+    private static volatile int sampleThreshold;
+
+    static {
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            SLOTS[i] = new Slot();
+        }
+        setSampleRate(Double.parseDouble(System.getProperty("member.diagnostics.sample-rate", "0.01")));
+    }
+
+    public static void setSampleRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("sample rate must be between 0 and 1 rate=" + rate);
+        }
+        sampleThreshold = rate >= 1 ? Integer.MAX_VALUE : (int) (rate * Integer.MAX_VALUE);
+    }
+
+    //다음 count 개의 트랜잭션을 샘플링 없이 전부 기록한다
+    public static void traceNextTransactions(int count) {
+        PENDING_TRACES.addAndGet(count);
+    }
+
+    public static void connectionAcquired(Connection connection) {
+        long traceId = traceId();
+        if (traceId == 0 && !sampled()) {
+            return;
+        }
+        record(DiagnosticEvent.Type.CONNECTION_ACQUIRED, traceId,
+            System.identityHashCode(connection), connection.getClass().getName(), null, 0);
+    }
+
+    public static void updated(String memberId, int resultSize) {
+        long traceId = traceId();
+        if (traceId == 0 && !sampled()) {
+            return;
+        }
+        record(DiagnosticEvent.Type.UPDATE, traceId, 0, null, memberId, resultSize);
+    }
+
+    //버퍼에 남아 있는 이벤트를 오래된 순서로 복사한다
+    public static List<DiagnosticEvent> snapshot() {
+        long end = SEQUENCE.get();
+        long start = Math.max(0, end - BUFFER_SIZE);
+        List<DiagnosticEvent> events = new ArrayList<>();
+        for (long seq = start; seq < end; seq++) {
+            DiagnosticEvent event = SLOTS[(int) (seq & (BUFFER_SIZE - 1))].read(seq);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    public static List<DiagnosticEvent> trace(long traceId) {
+        List<DiagnosticEvent> events = new ArrayList<>();
+        for (DiagnosticEvent event : snapshot()) {
+            if (event.getTraceId() == traceId) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    //가장 최근에 시작한 추적 id
+    public static long lastTraceId() {
+        return TRACE_IDS.get();
+    }
+
+    private static boolean sampled() {
+        int threshold = sampleThreshold;
+        return threshold != 0 && (threshold == Integer.MAX_VALUE || ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE) < threshold);
+    }
+
+    /**
+     * 추적 중인 트랜잭션이면 그 id, 아니면 0
+     * 추적 요청도 진행 중인 추적도 없으면 ThreadLocal 을 보지 않고 바로 0 을 반환한다
+     */
+    private static long traceId() {
+        if (PENDING_TRACES.get() == 0 && ACTIVE_TRACES.get() == 0) {
+            return 0;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return 0;
+        }
+        Long current = (Long) TransactionSynchronizationManager.getResource(TRACE_KEY);
+        if (current != null) {
+            return current;
+        }
+        while (true) {
+            int pending = PENDING_TRACES.get();
+            if (pending == 0) {
+                return 0;
+            }
+            if (PENDING_TRACES.compareAndSet(pending, pending - 1)) {
+                break;
+            }
+        }
+        long traceId = TRACE_IDS.incrementAndGet();
+        TransactionSynchronizationManager.bindResource(TRACE_KEY, traceId);
+        ACTIVE_TRACES.incrementAndGet();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResource(TRACE_KEY);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(TRACE_KEY, traceId);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(TRACE_KEY);
+                record(DiagnosticEvent.Type.TRANSACTION_END, traceId, 0, null, null, status);
+                ACTIVE_TRACES.decrementAndGet();
+            }
+        });
+        return traceId;
+    }
+
+    private static void record(DiagnosticEvent.Type type, long traceId, int connectionId,
+                               String connectionClass, String memberId, long value) {
+        long seq = SEQUENCE.getAndIncrement();
+        SLOTS[(int) (seq & (BUFFER_SIZE - 1))].write(seq, type, traceId, connectionId, connectionClass, memberId, value);
+    }
+
+    /**
+     * 미리 만들어 둔 이벤트 칸
+     * 칸 단위로만 잠그므로 버퍼를 한 바퀴 돌아 같은 칸을 쓸 때만 경합한다
+     * 읽는 쪽은 sequence 를 확인해서 이미 덮어쓴 칸은 건너뛴다
+     */
+    private static final class Slot {
+        private long sequence = -1;
+        private long timestampNanos;
+        private String threadName;
+        private DiagnosticEvent.Type type;
+        private long traceId;
+        private int connectionId;
+        private String connectionClass;
+        private String memberId;
+        private long value;
+
+        private synchronized void write(long seq, DiagnosticEvent.Type type, long traceId, int connectionId,
+                                        String connectionClass, String memberId, long value) {
+            this.timestampNanos = System.nanoTime();
+            this.threadName = Thread.currentThread().getName();
+            this.type = type;
+            this.traceId = traceId;
+            this.connectionId = connectionId;
+            this.connectionClass = connectionClass;
+            this.memberId = memberId;
+            this.value = value;
+            sequence = seq;
+        }
+
+        private synchronized DiagnosticEvent read(long seq) {
+            if (sequence != seq) {
+                return null;
+            }
+            return new DiagnosticEvent(seq, timestampNanos, threadName, type, traceId,
+                connectionId, connectionClass, memberId, value);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package hello.jdbc.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * SQL 한 번 실행
+ * rowCount 는 update 면 영향받은 row 수, 배치면 합계, 조회는 결과를 읽기 전이므로 -1 이다
+ * 실패한 실행도 -1 로 남는다
+ */
+@Name("hello.jdbc.Statement")
+@Label("SQL Statement")
+@Category({"Member", "JDBC"})
+public class StatementEvent extends Event {
+
+    @Label("SQL")
+    private String sql;
+
+    @Label("Row Count")
+    private long rowCount;
+
+    public void end(String sql, long rowCount) {
+        if (shouldCommit()) {
+            this.sql = sql;
+            this.rowCount = rowCount;
+            commit();
+        }
+    }
+
+    public static long rowCount(int[] counts) {
+        long total = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                total += count;
+            }
+        }
+        return total;
+    }
+}
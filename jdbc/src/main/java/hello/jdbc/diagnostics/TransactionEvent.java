@@ -0,0 +1,51 @@
+package hello.jdbc.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 커넥션 트랜잭션 하나 (setAutoCommit(false) 부터 commit / rollback 까지)
+ * 시작 시각이 begin, outcome 이 COMMIT 또는 ROLLBACK 이다
+ * completionDuration 은 commit / rollback 호출 자체에 걸린 시간이다
+ *
+ * 커넥션 필드에 보관해야 해서 escape 되므로, 기록 중이 아니면 만들지 않도록 isRecording 으로 먼저 확인한다
+ */
+@Name("hello.jdbc.Transaction")
+@Label("Transaction")
+@Category({"Member", "JDBC"})
+@StackTrace(false)
+public class TransactionEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(TransactionEvent.class);
+
+    public static final String COMMIT = "COMMIT";
+    public static final String ROLLBACK = "ROLLBACK";
+
+    @Label("Connection Id")
+    private int connectionId;
+
+    @Label("Outcome")
+    private String outcome;
+
+    @Label("Completion Duration")
+    @Timespan
+    private long completionDuration;
+
+    public static boolean isRecording() {
+        return TYPE.isEnabled();
+    }
+
+    public void end(int connectionId, String outcome, long completionNanos) {
+        if (shouldCommit()) {
+            this.connectionId = connectionId;
+            this.outcome = outcome;
+            this.completionDuration = completionNanos;
+            commit();
+        }
+    }
+}
@@ -6,6 +6,8 @@ import lombok.Data;
 public class Member {
     private String memberId;
     private int money;
+    //낙관적 락 버전. money 를 변경할 때마다 1씩 증가한다
+    private long version;
 
     public Member(){}
 
@@ -0,0 +1,125 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 배치 처리 공통 로직
+ * 큰 컬렉션을 청크 단위로 나누고, 배치 실패 시 어떤 row가 실패했는지 찾는다
+ * 여러 키 조회에 쓰는 고정 크기 IN 절도 여기서 만든다
+ */
+abstract class BatchSupport {
+
+    //한번에 executeBatch 하는 row 수 기본값
+    static final int DEFAULT_BATCH_SIZE = 1000;
+
+    //IN 절의 파라미터 수는 항상 이 크기로 고정한다
+    //sql 문자열이 매번 같아야 PreparedStatement 를 재사용할 수 있다
+    static final int IN_LIST_SIZE = 100;
+
+    //H2 중복 키 에러코드
+    static final int DUPLICATE_KEY_ERROR_CODE = 23505;
+
+    static <T> List<List<T>> chunk(Collection<T> items, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("chunk size must be positive size=" + size);
+        }
+        List<List<T>> chunks = new ArrayList<>();
+        List<T> current = new ArrayList<>(Math.min(size, items.size()));
+        for (T item : items) {
+            current.add(item);
+            if (current.size() == size) {
+                chunks.add(current);
+                current = new ArrayList<>(size);
+            }
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    /**
+     * 배치 예외의 updateCounts 를 보고 실패한 memberId 목록을 반환한다
+     * 드라이버가 실패 지점에서 멈추면 updateCounts 길이가 짧아지고, 그 다음 row가 실패한 row다
+     */
+    static List<String> failedMemberIds(List<Member> chunk, Throwable ex) {
+        List<String> failed = new ArrayList<>();
+        if (!(ex instanceof BatchUpdateException)) {
+            return failed;
+        }
+        int[] counts = ((BatchUpdateException) ex).getUpdateCounts();
+        for (int i = 0; i < counts.length && i < chunk.size(); i++) {
+            if (counts[i] == Statement.EXECUTE_FAILED) {
+                failed.add(chunk.get(i).getMemberId());
+            }
+        }
+        if (failed.isEmpty() && counts.length < chunk.size()) {
+            failed.add(chunk.get(counts.length).getMemberId());
+        }
+        return failed;
+    }
+
+    static boolean isDuplicateKey(SQLException e) {
+        if (e.getErrorCode() == DUPLICATE_KEY_ERROR_CODE) {
+            return true;
+        }
+        SQLException next = e.getNextException();
+        return next != null && next.getErrorCode() == DUPLICATE_KEY_ERROR_CODE;
+    }
+
+    // (?, ?, ..., ?)
+    static String inList(int size) {
+        return "(" + String.join(", ", Collections.nCopies(size, "?")) + ")";
+    }
+
+    //청크가 IN 절보다 작으면 마지막 키를 반복해서 채운다. IN 절에서 중복 키는 결과에 영향이 없다
+    static Object[] inListArgs(List<String> chunk, int size) {
+        Object[] args = new Object[size];
+        for (int i = 0; i < size; i++) {
+            args[i] = chunk.get(Math.min(i, chunk.size() - 1));
+        }
+        return args;
+    }
+
+    static void bindInList(PreparedStatement pstmt, List<String> chunk, int size) throws SQLException {
+        for (int i = 0; i < size; i++) {
+            pstmt.setString(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+        }
+    }
+
+    /**
+     * 여러 청크를 lookupExecutor 로 나눠 병렬 조회해도 되는지
+     * 이 스레드에 dataSource 의 커넥션이 묶여 있으면 (트랜잭션 안) 다른 스레드는 그 커넥션도, 커밋 전 변경도 볼 수 없다
+     */
+    static boolean canLookupInParallel(DataSource dataSource, Executor lookupExecutor, int chunks) {
+        return lookupExecutor != null && chunks > 1
+            && TransactionSynchronizationManager.getResource(dataSource) == null
+            && !TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    //비동기 작업에서 발생한 런타임 예외는 감싸지 않고 그대로 던진다
+    static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 오래된 값을 허용하는 조회 (잔액 표시, 명세서 화면용)
+ * findById(memberId, maxStaleness) 는 maxStaleness 보다 새로운 스냅샷이 있으면 DB 에 가지 않는다
+ *
+ * 스냅샷은 백그라운드 스레드가 refreshInterval 마다 findByIds 로 한번에 갱신한다
+ * 허용 시간의 절반이 지난 값은 제공하면서 비동기 갱신을 요청하므로 호출자는 갱신을 기다리지 않는다
+ * 스냅샷이 없거나 허용 시간을 넘었을 때만 직접 조회한다
+ *
+ * 값의 나이는 DB 조회를 시작한 시각부터 잰다. 조회 중에 커밋된 변경이 있어도 나이 제한은 지켜진다
+ * idleTimeout 동안 읽지 않은 스냅샷은 갱신하지 않고 지운다. maxEntries 가 찼을 때 지금 읽히는 키가 들어올 자리를 만든다
+ * 이체처럼 정확한 값이 필요한 곳은 기존 findById 를 쓴다 (그대로 target 에 위임한다)
+ */
+@Slf4j
+public class BoundedStalenessMemberRepository implements MemberRepository, AutoCloseable {
+
+    //idleTimeout 을 주지 않으면 갱신 주기의 이 배수 동안 읽지 않은 스냅샷을 지운다
+    public static final int DEFAULT_IDLE_REFRESHES = 10;
+
+    private final MemberRepository target;
+    private final int maxEntries;
+    private final long idleNanos;
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<String> pendingRefresh = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService refresher;
+
+    private final LongAdder served = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final LongAdder idleEvictions = new LongAdder();
+    private final LongAccumulator maxServedAgeMillis = new LongAccumulator(Long::max, 0);
+    private final AtomicLongArray ageHistogram = new AtomicLongArray(32);
+
+    public BoundedStalenessMemberRepository(MemberRepository target, Duration refreshInterval, int maxEntries) {
+        this(target, refreshInterval, maxEntries, refreshInterval.multipliedBy(DEFAULT_IDLE_REFRESHES));
+    }
+
+    public BoundedStalenessMemberRepository(MemberRepository target, Duration refreshInterval, int maxEntries,
+                                            Duration idleTimeout) {
+        this.target = target;
+        this.maxEntries = maxEntries;
+        this.idleNanos = idleTimeout.toNanos();
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "member-snapshot-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = refreshInterval.toMillis();
+        refresher.scheduleWithFixedDelay(this::refreshAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * maxStaleness 보다 오래되지 않은 값을 반환한다
+     * 트랜잭션 안에서는 자기 변경을 봐야 하므로 항상 target 에서 조회한다
+     */
+    public Member findById(String memberId, Duration maxStaleness) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return target.findById(memberId);
+        }
+        long maxStaleNanos = maxStaleness.toNanos();
+        Snapshot snapshot = snapshots.get(memberId);
+        if (snapshot != null) {
+            long now = System.nanoTime();
+            //자주 읽는 키에서 매번 같은 필드에 쓰지 않도록 제한 시간의 1/16 이 지났을 때만 기록한다
+            if (now - snapshot.lastReadAt > idleNanos >>> 4) {
+                snapshot.lastReadAt = now;
+            }
+            long age = now - snapshot.loadedAt;
+            if (age <= maxStaleNanos) {
+                if (age > maxStaleNanos / 2) {
+                    requestRefresh(memberId);
+                }
+                recordAge(age);
+                return copy(snapshot.member);
+            }
+        }
+
+        loads.increment();
+        long loadedAt = System.nanoTime();
+        Member member = target.findById(memberId);
+        if (snapshot != null || snapshots.size() < maxEntries) {
+            store(memberId, new Snapshot(copy(member), loadedAt, loadedAt));
+        }
+        return member;
+    }
+
+    @Override
+    public Member save(Member member) {
+        Member saved = target.save(member);
+        evict(member.getMemberId());
+        return saved;
+    }
+
+    @Override
+    public void saveAll(Collection<Member> members) {
+        target.saveAll(members);
+        List<String> memberIds = new ArrayList<>(members.size());
+        for (Member member : members) {
+            memberIds.add(member.getMemberId());
+        }
+        evictAll(memberIds);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return target.findById(memberId);
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        return target.findOptionalById(memberId);
+    }
+
+    @Override
+    public boolean exists(String memberId) {
+        return target.exists(memberId);
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return target.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findByIds(Collection<String> memberIds) {
+        return target.findByIds(memberIds);
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        return target.findPage(afterMemberId, limit);
+    }
+
+    @Override
+    public void forEach(int fetchSize, boolean copy, Consumer<Member> action) {
+        target.forEach(fetchSize, copy, action);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        target.update(memberId, money);
+        evict(memberId);
+    }
+
+    @Override
+    public int update(String memberId, long expectedVersion, int newMoney) {
+        int affected = target.update(memberId, expectedVersion, newMoney);
+        if (affected > 0) {
+            evict(memberId);
+        }
+        return affected;
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        int affected = target.addMoney(memberId, delta);
+        if (affected > 0) {
+            evict(memberId);
+        }
+        return affected;
+    }
+
+    @Override
+    public int withdraw(String memberId, int amount) {
+        int affected = target.withdraw(memberId, amount);
+        if (affected > 0) {
+            evict(memberId);
+        }
+        return affected;
+    }
+
+    @Override
+    public void delete(String memberId) {
+        target.delete(memberId);
+        evict(memberId);
+    }
+
+    public StalenessStats stats() {
+        long[] histogram = new long[ageHistogram.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = ageHistogram.get(i);
+        }
+        return new StalenessStats(served.sum(), loads.sum(), refreshes.sum(), refreshFailures.sum(),
+            idleEvictions.sum(), maxServedAgeMillis.get(), histogram);
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    //같은 키의 갱신 요청이 이미 대기 중이면 다시 넣지 않는다
+    private void requestRefresh(String memberId) {
+        if (pendingRefresh.add(memberId)) {
+            try {
+                refresher.execute(() -> {
+                    pendingRefresh.remove(memberId);
+                    refresh(List.of(memberId));
+                });
+            } catch (RuntimeException e) {
+                //종료 중이면 갱신하지 않는다
+                pendingRefresh.remove(memberId);
+            }
+        }
+    }
+
+    private void refreshAll() {
+        long now = System.nanoTime();
+        List<String> memberIds = new ArrayList<>(snapshots.size());
+        for (Map.Entry<String, Snapshot> entry : snapshots.entrySet()) {
+            //읽히지 않는 키를 계속 갱신하지 않고, 새로 읽히는 키가 들어올 자리를 만든다
+            if (now - entry.getValue().lastReadAt > idleNanos) {
+                if (snapshots.remove(entry.getKey(), entry.getValue())) {
+                    idleEvictions.increment();
+                }
+            } else {
+                memberIds.add(entry.getKey());
+            }
+        }
+        for (List<String> chunk : BatchSupport.chunk(memberIds, BatchSupport.DEFAULT_BATCH_SIZE)) {
+            refresh(chunk);
+        }
+    }
+
+    private void refresh(List<String> memberIds) {
+        long loadedAt = System.nanoTime();
+        try {
+            Map<String, Member> found = target.findByIds(memberIds);
+            for (String memberId : memberIds) {
+                Member member = found.get(memberId);
+                if (member == null) {
+                    snapshots.remove(memberId);
+                } else {
+                    //그 사이 지워진 키는 다시 넣지 않는다. 마지막으로 읽은 시각은 그대로 둔다
+                    snapshots.computeIfPresent(memberId, (id, old) -> loadedAt - old.loadedAt >= 0
+                        ? new Snapshot(member, loadedAt, old.lastReadAt) : old);
+                }
+            }
+            refreshes.increment();
+        } catch (RuntimeException e) {
+            //갱신에 실패해도 스냅샷은 나이가 차면 직접 조회로 넘어가므로 기록만 한다
+            refreshFailures.increment();
+            log.warn("스냅샷 갱신 실패 size={}", memberIds.size(), e);
+        }
+    }
+
+    //늦게 끝난 오래된 조회가 더 새로운 스냅샷을 덮어쓰지 않도록 한다
+    private void store(String memberId, Snapshot snapshot) {
+        snapshots.merge(memberId, snapshot, (old, loaded) -> loaded.loadedAt - old.loadedAt >= 0 ? loaded : old);
+    }
+
+    private void recordAge(long ageNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(ageNanos);
+        served.increment();
+        maxServedAgeMillis.accumulate(millis);
+        ageHistogram.incrementAndGet(millis <= 1 ? 0 : Math.min(31, 63 - Long.numberOfLeadingZeros(millis)));
+    }
+
+    private void evict(String memberId) {
+        evictAll(List.of(memberId));
+    }
+
+    //커밋된 변경은 다음 조회에서 바로 보이도록 스냅샷을 지운다
+    private void evictAll(Collection<String> memberIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            memberIds.forEach(snapshots::remove);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                memberIds.forEach(snapshots::remove);
+            }
+        });
+    }
+
+    private Member copy(Member member) {
+        Member copy = new Member(member.getMemberId(), member.getMoney());
+        copy.setVersion(member.getVersion());
+        return copy;
+    }
+
+    private static final class Snapshot {
+        private final Member member;
+        private final long loadedAt;
+        private volatile long lastReadAt;
+
+        private Snapshot(Member member, long loadedAt, long lastReadAt) {
+            this.member = member;
+            this.loadedAt = loadedAt;
+            this.lastReadAt = lastReadAt;
+        }
+    }
+}
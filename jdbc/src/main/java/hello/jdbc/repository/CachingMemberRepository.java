@@ -0,0 +1,203 @@
+package hello.jdbc.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * 조회 캐시 데코레이터
+ * 어떤 MemberRepository 든 감싸서 findById, findByIds 를 크기/시간 제한이 있는 캐시로 처리한다
+ *
+ * 변경은 트랜잭션이 커밋된 뒤에만 캐시에서 지운다 (TransactionSynchronizationManager 에 등록)
+ * 롤백되면 DB 가 그대로이므로 캐시도 그대로 둔다
+ * 트랜잭션 안의 조회는 아직 커밋되지 않은 자기 변경을 볼 수 있으므로 캐시를 거치지 않는다
+ */
+@Slf4j
+public class CachingMemberRepository implements MemberRepository {
+
+    private final MemberRepository target;
+    private final Cache<String, Member> cache;
+
+    public CachingMemberRepository(MemberRepository target, long maximumSize, Duration expireAfterWrite) {
+        this.target = target;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWrite)
+            .recordStats()
+            .build();
+    }
+
+    @Override
+    public Member save(Member member) {
+        Member saved = target.save(member);
+        evict(member.getMemberId());
+        return saved;
+    }
+
+    @Override
+    public void saveAll(Collection<Member> members) {
+        target.saveAll(members);
+        List<String> memberIds = new ArrayList<>(members.size());
+        for (Member member : members) {
+            memberIds.add(member.getMemberId());
+        }
+        evictAll(memberIds);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return target.findById(memberId);
+        }
+        //같은 키를 로딩하는 동안 들어온 무효화는 로딩이 끝난 뒤에 반영되므로 오래된 값이 남지 않는다
+        //없는 회원은 예외가 그대로 전파되고 캐시되지 않는다
+        return copy(cache.get(memberId, target::findById));
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return target.findOptionalById(memberId);
+        }
+        //로더가 null 을 반환하면 캐시에 넣지 않는다
+        Member member = cache.get(memberId, id -> target.findOptionalById(id).orElse(null));
+        return Optional.ofNullable(member).map(this::copy);
+    }
+
+    @Override
+    public boolean exists(String memberId) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive() && cache.getIfPresent(memberId) != null) {
+            return true;
+        }
+        return target.exists(memberId);
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return target.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findByIds(Collection<String> memberIds) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return target.findByIds(memberIds);
+        }
+        //캐시에 없는 키만 모아서 한번에 조회한다
+        Map<String, Member> found = cache.getAll(memberIds, missing -> {
+            List<String> missingIds = new ArrayList<>();
+            missing.forEach(missingIds::add);
+            return target.findByIds(missingIds);
+        });
+        Map<String, Member> result = new HashMap<>();
+        found.forEach((memberId, member) -> result.put(memberId, copy(member)));
+        return result;
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        return target.findPage(afterMemberId, limit);
+    }
+
+    @Override
+    public void forEach(int fetchSize, boolean copy, Consumer<Member> action) {
+        target.forEach(fetchSize, copy, action);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        target.update(memberId, money);
+        evict(memberId);
+    }
+
+    @Override
+    public int update(String memberId, long expectedVersion, int newMoney) {
+        int affected = target.update(memberId, expectedVersion, newMoney);
+        if (affected > 0) {
+            evict(memberId);
+        }
+        return affected;
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        int affected = target.addMoney(memberId, delta);
+        if (affected > 0) {
+            evict(memberId);
+        }
+        return affected;
+    }
+
+    @Override
+    public int withdraw(String memberId, int amount) {
+        int affected = target.withdraw(memberId, amount);
+        if (affected > 0) {
+            evict(memberId);
+        }
+        return affected;
+    }
+
+    @Override
+    public void delete(String memberId) {
+        target.delete(memberId);
+        evict(memberId);
+    }
+
+    /**
+     * 시작할 때 DB 에서 읽은 값을 미리 넣는다
+     * 다른 스레드가 이미 더 새로운 값을 넣었을 수 있으므로 없는 키만 넣는다
+     */
+    public void preload(Collection<Member> members) {
+        for (Member member : members) {
+            cache.asMap().putIfAbsent(member.getMemberId(), copy(member));
+        }
+    }
+
+    //자주 조회되어 캐시에 오래 남을 키부터 limit 개
+    public List<String> hottestMemberIds(int limit) {
+        return cache.policy().eviction()
+            .map(eviction -> new ArrayList<>(eviction.hottest(limit).keySet()))
+            .orElseGet(() -> new ArrayList<>(cache.asMap().keySet()));
+    }
+
+    //hit, miss, eviction 수
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private void evict(String memberId) {
+        evictAll(List.of(memberId));
+    }
+
+    private void evictAll(Collection<String> memberIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidateAll(memberIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.invalidateAll(memberIds);
+            }
+        });
+    }
+
+    //캐시에 있는 Member 를 호출한 쪽에서 변경하지 못하도록 복사해서 넘긴다
+    private Member copy(Member member) {
+        Member copy = new Member(member.getMemberId(), member.getMoney());
+        copy.setVersion(member.getVersion());
+        return copy;
+    }
+}
@@ -0,0 +1,21 @@
+package hello.jdbc.repository;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 슬라이딩 윈도우 안에서 자주 호출된 memberId 와 추정 호출 수
+ * count-min sketch 추정값이므로 실제보다 클 수는 있어도 작지는 않다
+ */
+@Getter
+@ToString
+public class HotKey {
+
+    private final String memberId;
+    private final long count;
+
+    public HotKey(String memberId, long count) {
+        this.memberId = memberId;
+        this.count = count;
+    }
+}
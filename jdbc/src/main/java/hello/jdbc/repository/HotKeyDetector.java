@@ -0,0 +1,208 @@
+package hello.jdbc.repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 자주 호출되는 키를 고정 메모리로 찾는다 (count-min sketch + top-K 힙)
+ *
+ * 키마다 카운터를 두지 않고 DEPTH 개의 해시 행에 나눠 센다. 추정값은 행마다 센 값의 최솟값이다
+ * 윈도우를 SLOTS 개 구간으로 나누고 구간마다 스케치를 둔다. 구간이 바뀌면 가장 오래된 구간을 지운다
+ * 카운터 증가는 AtomicLongArray 로 락 없이 처리하고,
+ * top-K 에 없는 키의 추정값이 top-K 의 최솟값을 넘는 드문 경우에만 락을 잡고 힙을 갱신한다
+ * 이미 top-K 에 있는 키는 락을 잡지 않는다. 다른 스레드가 락을 잡고 있으면 기다리지 않고 건너뛴다
+ *
+ * 힙의 값은 넣을 때 읽은 값이라 실제보다 작을 수 있다. 윈도우 안에서 추정값은 줄지 않으므로
+ * 전체를 다시 읽지 않고 후보가 올 때마다 최솟값 자리의 키 하나만 다시 읽는다 (전체는 구간이 바뀔 때만 다시 읽는다)
+ * 새 키는 최솟값을 1/8 넘게 넘어야 들어온다. 방금 밀려난 키를 포함해 비슷한 값의 키끼리 번갈아 락을 잡지 않는다
+ *
+ * 구간을 지우는 중에 들어온 호출 몇 건은 빠질 수 있다. 추정치를 보는 용도이므로 허용한다
+ */
+public class HotKeyDetector {
+
+    public static final int DEFAULT_WIDTH = 1 << 14;
+    private static final int DEPTH = 4;
+    private static final int SLOTS = 4;
+    private static final int[] SEEDS = {0x9e3779b9, 0x85ebca6b, 0xc2b2ae35, 0x27d4eb2f};
+
+    private final int k;
+    private final int mask;
+    private final long slotNanos;
+    private final AtomicLongArray[] sketches = new AtomicLongArray[SLOTS];
+    private final AtomicLong epoch;
+
+    //top-K 에 들어가려면 넘어야 하는 추정값 (최솟값 + 1/8). 가득 차기 전에는 0
+    private volatile long threshold;
+    //락 없이 포함 여부를 확인하기 위한 top-K 키 복사본
+    private volatile Set<String> topKeys = Set.of();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Long> top = new HashMap<>();
+    private final PriorityQueue<String> heap = new PriorityQueue<>(Comparator.comparingLong(top::get));
+
+    public HotKeyDetector(int k, Duration window) {
+        this(k, DEFAULT_WIDTH, window);
+    }
+
+    public HotKeyDetector(int k, int width, Duration window) {
+        int size = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.k = k;
+        this.mask = size - 1;
+        this.slotNanos = Math.max(1, window.toNanos() / SLOTS);
+        for (int i = 0; i < SLOTS; i++) {
+            sketches[i] = new AtomicLongArray(DEPTH * size);
+        }
+        this.epoch = new AtomicLong(System.nanoTime() / slotNanos);
+    }
+
+    public void record(String key) {
+        long now = System.nanoTime() / slotNanos;
+        if (now != epoch.get()) {
+            rotate(now);
+        }
+        AtomicLongArray current = sketches[(int) (now % SLOTS)];
+        int hash = key.hashCode();
+        for (int d = 0; d < DEPTH; d++) {
+            current.incrementAndGet(index(hash, d));
+        }
+        long estimate = estimate(hash);
+        if (estimate > threshold && !topKeys.contains(key)) {
+            offer(key, estimate);
+        }
+    }
+
+    //윈도우 전체에서의 추정 호출 수
+    public long estimate(String key) {
+        //호출이 끊긴 뒤에도 지나간 구간이 남아 있지 않도록 조회할 때도 구간을 넘긴다
+        rotate(System.nanoTime() / slotNanos);
+        return estimate(key.hashCode());
+    }
+
+    //추정 호출 수가 많은 순서
+    public List<HotKey> snapshot() {
+        rotate(System.nanoTime() / slotNanos);
+        List<HotKey> result = new ArrayList<>();
+        lock.lock();
+        try {
+            reestimate();
+            top.forEach((memberId, count) -> result.add(new HotKey(memberId, count)));
+        } finally {
+            lock.unlock();
+        }
+        result.sort(Comparator.comparingLong(HotKey::getCount).reversed());
+        return result;
+    }
+
+    private long estimate(int hash) {
+        long min = Long.MAX_VALUE;
+        for (int d = 0; d < DEPTH; d++) {
+            int index = index(hash, d);
+            long sum = 0;
+            for (AtomicLongArray sketch : sketches) {
+                sum += sketch.get(index);
+            }
+            min = Math.min(min, sum);
+        }
+        return min;
+    }
+
+    private int index(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9e3779b1;
+        h ^= h >>> 15;
+        return row * (mask + 1) + (h & mask);
+    }
+
+    //구간이 바뀌면 한 스레드만 지나간 구간을 지우고 top-K 를 다시 계산한다
+    private void rotate(long now) {
+        long old = epoch.get();
+        if (now <= old || !epoch.compareAndSet(old, now)) {
+            return;
+        }
+        long expired = Math.min(now - old, SLOTS);
+        for (long e = now - expired + 1; e <= now; e++) {
+            AtomicLongArray sketch = sketches[(int) (e % SLOTS)];
+            for (int i = 0; i < sketch.length(); i++) {
+                sketch.set(i, 0);
+            }
+        }
+        lock.lock();
+        try {
+            reestimate();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void offer(String key, long estimate) {
+        //뜨거운 키라면 곧 다시 호출되므로 이번 한 번은 놓쳐도 된다
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            if (top.containsKey(key)) {
+                return;
+            }
+            if (heap.size() >= k) {
+                String min = heap.peek();
+                if (refresh(min) || estimate <= entryBar(top.get(min))) {
+                    //최솟값이 올라갔으면 그만큼 다음 호출부터는 락까지 오지 않는다
+                    updateThreshold();
+                    return;
+                }
+                heap.poll();
+                top.remove(min);
+            }
+            top.put(key, estimate);
+            heap.add(key);
+            updateThreshold();
+            topKeys = Set.copyOf(top.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //락을 잡은 상태에서 호출한다. 최솟값 자리의 키 하나만 다시 읽어서 값이 커졌으면 힙에 다시 넣고 true
+    //그대로면 그 키가 실제 최솟값이다. 커졌으면 새 최솟값도 오래된 값일 수 있으므로 이번 후보는 넣지 않는다
+    private boolean refresh(String min) {
+        long count = estimate(min.hashCode());
+        if (count <= top.get(min)) {
+            return false;
+        }
+        heap.poll();
+        top.put(min, count);
+        heap.add(min);
+        return true;
+    }
+
+    //락을 잡은 상태에서 호출한다. 값을 바꾸면 힙 순서가 깨지므로 힙을 다시 만든다
+    private void reestimate() {
+        List<String> keys = new ArrayList<>(top.keySet());
+        heap.clear();
+        top.clear();
+        for (String key : keys) {
+            long count = estimate(key.hashCode());
+            if (count > 0) {
+                top.put(key, count);
+                heap.add(key);
+            }
+        }
+        updateThreshold();
+        topKeys = Set.copyOf(top.keySet());
+    }
+
+    private void updateThreshold() {
+        threshold = heap.size() < k ? 0 : entryBar(top.get(heap.peek()));
+    }
+
+    private static long entryBar(long min) {
+        return min + (min >>> 3);
+    }
+}
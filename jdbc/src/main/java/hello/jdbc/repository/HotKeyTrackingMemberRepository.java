@@ -0,0 +1,122 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * 어떤 회원에 호출이 몰리는지 보는 데코레이터
+ * 단건 조회와 변경을 따로 HotKeyDetector 에 기록한다
+ * 조회가 몰리는 키는 캐시 대상, 변경이 몰리는 키는 락 경합 후보로 본다
+ *
+ * 여러 건을 다루는 saveAll, findByIds, findPage, forEach 는 기록하지 않는다
+ */
+@Slf4j
+public class HotKeyTrackingMemberRepository implements MemberRepository {
+
+    private final MemberRepository target;
+    private final HotKeyDetector reads;
+    private final HotKeyDetector writes;
+
+    public HotKeyTrackingMemberRepository(MemberRepository target, int k, Duration window) {
+        this(target, new HotKeyDetector(k, window), new HotKeyDetector(k, window));
+    }
+
+    public HotKeyTrackingMemberRepository(MemberRepository target, HotKeyDetector reads, HotKeyDetector writes) {
+        this.target = target;
+        this.reads = reads;
+        this.writes = writes;
+    }
+
+    @Override
+    public Member save(Member member) {
+        return target.save(member);
+    }
+
+    @Override
+    public void saveAll(Collection<Member> members) {
+        target.saveAll(members);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        reads.record(memberId);
+        return target.findById(memberId);
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        reads.record(memberId);
+        return target.findOptionalById(memberId);
+    }
+
+    @Override
+    public boolean exists(String memberId) {
+        return target.exists(memberId);
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        //행 잠금을 잡으므로 변경으로 센다
+        writes.record(memberId);
+        return target.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findByIds(Collection<String> memberIds) {
+        return target.findByIds(memberIds);
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        return target.findPage(afterMemberId, limit);
+    }
+
+    @Override
+    public void forEach(int fetchSize, boolean copy, Consumer<Member> action) {
+        target.forEach(fetchSize, copy, action);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        writes.record(memberId);
+        target.update(memberId, money);
+    }
+
+    @Override
+    public int update(String memberId, long expectedVersion, int newMoney) {
+        writes.record(memberId);
+        return target.update(memberId, expectedVersion, newMoney);
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        writes.record(memberId);
+        return target.addMoney(memberId, delta);
+    }
+
+    @Override
+    public int withdraw(String memberId, int amount) {
+        writes.record(memberId);
+        return target.withdraw(memberId, amount);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        target.delete(memberId);
+    }
+
+    public List<HotKey> hotReads() {
+        return reads.snapshot();
+    }
+
+    public List<HotKey> hotWrites() {
+        return writes.snapshot();
+    }
+}
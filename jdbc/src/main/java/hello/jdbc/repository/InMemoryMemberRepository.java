@@ -0,0 +1,449 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * JDBC 없이 메모리에 저장하는 MemberRepository (테스트, 앞단 캐시 계층용)
+ * MemberRepositoryV5 와 같은 계약을 지키고 같은 스프링 예외를 던진다
+ *
+ * 세그먼트마다 오픈 어드레싱 테이블을 두고 String -> int 를 배열에 그대로 저장한다 (Integer 박싱 없음)
+ * 조회는 StampedLock 낙관적 읽기로 락 없이, 변경은 세그먼트 락으로 처리한다
+ * transfer 는 두 세그먼트를 항상 같은 순서로 잠가서 교착 없이 원자적으로 이체한다
+ *
+ * 트랜잭션을 지원하지 않으므로 모든 변경은 즉시 반영된다
+ * 행 잠금이 없으므로 findByIdForUpdate 는 findById 와 같다
+ */
+@Slf4j
+public class InMemoryMemberRepository implements MemberRepository {
+
+    public static final int DEFAULT_SEGMENTS = 64;
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    //지운 슬롯 표시. 비교는 참조로 한다
+    private static final String DELETED = new String("<deleted>");
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    public InMemoryMemberRepository() {
+        this(DEFAULT_SEGMENTS);
+    }
+
+    public InMemoryMemberRepository(int segments) {
+        int size = Integer.highestOneBit(Math.max(1, segments - 1)) << 1;
+        this.segments = new Segment[size];
+        for (int i = 0; i < size; i++) {
+            this.segments[i] = new Segment();
+        }
+        this.segmentMask = size - 1;
+    }
+
+    @Override
+    public Member save(Member member) {
+        if (!segmentFor(member.getMemberId()).insert(member.getMemberId(), member.getMoney())) {
+            throw new DuplicateKeyException("duplicate key memberId=" + member.getMemberId());
+        }
+        return member;
+    }
+
+    @Override
+    public void saveAll(Collection<Member> members) {
+        //V5 처럼 실패한 회원만 모아서 알려준다. 나머지는 저장된다
+        List<String> failed = new ArrayList<>();
+        for (Member member : members) {
+            if (!segmentFor(member.getMemberId()).insert(member.getMemberId(), member.getMoney())) {
+                failed.add(member.getMemberId());
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new DuplicateKeyException("duplicate key failedMemberIds=" + failed);
+        }
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return findOptionalById(memberId)
+            .orElseThrow(() -> new EmptyResultDataAccessException("member not found memberId=" + memberId, 1));
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        return Optional.ofNullable(segmentFor(memberId).get(memberId));
+    }
+
+    @Override
+    public boolean exists(String memberId) {
+        return segmentFor(memberId).get(memberId) != null;
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return findById(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findByIds(Collection<String> memberIds) {
+        Map<String, Member> result = new HashMap<>();
+        for (String memberId : memberIds) {
+            Member member = segmentFor(memberId).get(memberId);
+            if (member != null) {
+                result.put(memberId, member);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive limit=" + limit);
+        }
+        //정렬된 인덱스가 없으므로 전체를 훑으면서 가장 작은 limit + 1 건만 남긴다
+        TreeMap<String, Member> smallest = new TreeMap<>();
+        forEach(member -> {
+            if (afterMemberId != null && member.getMemberId().compareTo(afterMemberId) <= 0) {
+                return;
+            }
+            smallest.put(member.getMemberId(), member);
+            if (smallest.size() > limit + 1) {
+                smallest.pollLastEntry();
+            }
+        });
+        return MemberPage.of(new ArrayList<>(smallest.values()), limit);
+    }
+
+    @Override
+    public void forEach(int fetchSize, boolean copy, Consumer<Member> action) {
+        //세그먼트 단위로 복사한 뒤 락 밖에서 콜백을 호출한다. fetchSize 는 사용하지 않는다
+        Member holder = new Member();
+        for (Segment segment : segments) {
+            for (Member member : segment.snapshot()) {
+                if (copy) {
+                    action.accept(member);
+                } else {
+                    holder.setMemberId(member.getMemberId());
+                    holder.setMoney(member.getMoney());
+                    holder.setVersion(member.getVersion());
+                    action.accept(holder);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        segmentFor(memberId).set(memberId, -1, money);
+    }
+
+    @Override
+    public int update(String memberId, long expectedVersion, int newMoney) {
+        return segmentFor(memberId).set(memberId, expectedVersion, newMoney);
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        return segmentFor(memberId).add(memberId, delta, Integer.MIN_VALUE);
+    }
+
+    @Override
+    public int withdraw(String memberId, int amount) {
+        if (amount <= 0) {
+            //음수를 허용하면 money>=? 검사를 그대로 통과해 출금이 입금이 된다
+            throw new IllegalArgumentException("출금 금액은 양수여야 함 amount=" + amount);
+        }
+        //잔액 검사와 차감을 락 안에서 함께 처리한다
+        return segmentFor(memberId).add(memberId, -amount, amount);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        segmentFor(memberId).remove(memberId);
+    }
+
+    /**
+     * fromId 에서 toId 로 money 를 원자적으로 옮긴다
+     * 잔액이 부족하면 아무것도 바꾸지 않고 false 를 반환한다. money 는 양수여야 한다
+     * 세그먼트 번호 순서로 잠그므로 반대 방향 이체가 동시에 실행되어도 교착 상태가 되지 않는다
+     */
+    public boolean transfer(String fromId, String toId, int money) {
+        if (money <= 0) {
+            //음수를 허용하면 잔액 검사를 그대로 통과해 toId 의 잔액 검사 없이 반대로 옮겨진다
+            throw new IllegalArgumentException("이체 금액은 양수여야 함 money=" + money);
+        }
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("same member fromId=" + fromId);
+        }
+        int fromIndex = segmentIndex(fromId);
+        int toIndex = segmentIndex(toId);
+        Segment first = segments[Math.min(fromIndex, toIndex)];
+        Segment second = segments[Math.max(fromIndex, toIndex)];
+
+        long firstStamp = first.lock.writeLock();
+        long secondStamp = first == second ? 0 : second.lock.writeLock();
+        try {
+            Segment from = segments[fromIndex];
+            Segment to = segments[toIndex];
+            int fromSlot = from.slotOf(fromId);
+            int toSlot = to.slotOf(toId);
+            if (fromSlot < 0) {
+                throw new EmptyResultDataAccessException("member not found memberId=" + fromId, 1);
+            }
+            if (toSlot < 0) {
+                throw new EmptyResultDataAccessException("member not found memberId=" + toId, 1);
+            }
+            if (from.table.money[fromSlot] < money) {
+                return false;
+            }
+            from.table.money[fromSlot] -= money;
+            from.table.versions[fromSlot]++;
+            to.table.money[toSlot] += money;
+            to.table.versions[toSlot]++;
+            return true;
+        } finally {
+            if (first != second) {
+                second.lock.unlockWrite(secondStamp);
+            }
+            first.lock.unlockWrite(firstStamp);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String memberId) {
+        return segments[segmentIndex(memberId)];
+    }
+
+    private int segmentIndex(String memberId) {
+        return spread(memberId.hashCode()) & segmentMask;
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+
+    /**
+     * 키와 값을 나란히 둔 배열. 크기를 늘릴 때는 통째로 교체하므로
+     * 낙관적 읽기는 참조를 한 번만 읽고 그 테이블 안에서만 찾는다
+     */
+    private static final class Table {
+        final String[] keys;
+        final int[] money;
+        final long[] versions;
+
+        Table(int capacity) {
+            keys = new String[capacity];
+            money = new int[capacity];
+            versions = new long[capacity];
+        }
+    }
+
+    private static final class Segment {
+
+        final StampedLock lock = new StampedLock();
+        volatile Table table = new Table(INITIAL_SEGMENT_CAPACITY);
+        int size;
+        int used;
+
+        Member get(String memberId) {
+            long stamp = lock.tryOptimisticRead();
+            Member member = read(table, memberId);
+            if (lock.validate(stamp)) {
+                return member;
+            }
+            stamp = lock.readLock();
+            try {
+                return read(table, memberId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        boolean insert(String memberId, int money) {
+            long stamp = lock.writeLock();
+            try {
+                if (slotOf(memberId) >= 0) {
+                    return false;
+                }
+                //지운 슬롯을 포함해 3/4 을 넘으면 늘린다
+                if ((used + 1) * 4 > table.keys.length * 3) {
+                    resize();
+                }
+                Table t = table;
+                int slot = indexOf(memberId, t.keys.length);
+                while (t.keys[slot] != null && t.keys[slot] != DELETED) {
+                    slot = (slot + 1) & (t.keys.length - 1);
+                }
+                if (t.keys[slot] == null) {
+                    used++;
+                }
+                t.money[slot] = money;
+                t.versions[slot] = 0;
+                t.keys[slot] = memberId;
+                size++;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        //expectedVersion 이 -1 이면 버전을 확인하지 않는다
+        int set(String memberId, long expectedVersion, int money) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = slotOf(memberId);
+                if (slot < 0 || (expectedVersion != -1 && table.versions[slot] != expectedVersion)) {
+                    return 0;
+                }
+                table.money[slot] = money;
+                table.versions[slot]++;
+                return 1;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        //잔액이 minimum 이상일 때만 더한다
+        int add(String memberId, int delta, int minimum) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = slotOf(memberId);
+                if (slot < 0 || table.money[slot] < minimum) {
+                    return 0;
+                }
+                table.money[slot] += delta;
+                table.versions[slot]++;
+                return 1;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void remove(String memberId) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = slotOf(memberId);
+                if (slot >= 0) {
+                    table.keys[slot] = DELETED;
+                    size--;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        List<Member> snapshot() {
+            long stamp = lock.readLock();
+            try {
+                List<Member> members = new ArrayList<>(size);
+                Table t = table;
+                for (int slot = 0; slot < t.keys.length; slot++) {
+                    String key = t.keys[slot];
+                    if (key != null && key != DELETED) {
+                        members.add(toMember(key, t.money[slot], t.versions[slot]));
+                    }
+                }
+                return members;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        int size() {
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        //락을 잡은 상태에서 호출한다. 없으면 -1
+        int slotOf(String memberId) {
+            Table t = table;
+            int mask = t.keys.length - 1;
+            int slot = indexOf(memberId, t.keys.length);
+            for (int probe = 0; probe <= mask; probe++) {
+                String key = t.keys[slot];
+                if (key == null) {
+                    return -1;
+                }
+                if (key != DELETED && key.equals(memberId)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void resize() {
+            Table old = table;
+            //살아 있는 항목이 적으면 크기는 그대로 두고 지운 슬롯만 정리한다
+            int capacity = size * 2 >= old.keys.length ? old.keys.length * 2 : old.keys.length;
+            Table resized = new Table(capacity);
+            for (int slot = 0; slot < old.keys.length; slot++) {
+                String key = old.keys[slot];
+                if (key != null && key != DELETED) {
+                    int target = indexOf(key, capacity);
+                    while (resized.keys[target] != null) {
+                        target = (target + 1) & (capacity - 1);
+                    }
+                    resized.keys[target] = key;
+                    resized.money[target] = old.money[slot];
+                    resized.versions[target] = old.versions[slot];
+                }
+            }
+            table = resized;
+            used = size;
+        }
+
+        //낙관적 읽기 중에는 배열 값이 바뀔 수 있으므로 한 바퀴를 넘게 돌지 않는다
+        private static Member read(Table t, String memberId) {
+            int mask = t.keys.length - 1;
+            int slot = indexOf(memberId, t.keys.length);
+            for (int probe = 0; probe <= mask; probe++) {
+                String key = t.keys[slot];
+                if (key == null) {
+                    return null;
+                }
+                if (key != DELETED && key.equals(memberId)) {
+                    return toMember(key, t.money[slot], t.versions[slot]);
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int indexOf(String memberId, int capacity) {
+            //세그먼트 선택에 쓴 하위 비트와 겹치지 않도록 상위 비트를 섞는다
+            int h = spread(memberId.hashCode());
+            return Integer.rotateRight(h, 16) & (capacity - 1);
+        }
+
+        private static Member toMember(String memberId, int money, long version) {
+            Member member = new Member(memberId, money);
+            member.setVersion(version);
+            return member;
+        }
+    }
+}
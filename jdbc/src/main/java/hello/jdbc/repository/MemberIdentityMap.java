@@ -0,0 +1,171 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 트랜잭션 범위 1차 캐시 (identity map)
+ * 같은 트랜잭션 안에서 같은 회원을 다시 조회하면 DB 에 가지 않고 이 맵에서 돌려준다
+ *
+ * TransactionSynchronizationManager 리소스로 DataSource 마다 하나씩 바인딩하고 트랜잭션이 끝나면 해제한다
+ * 같은 트랜잭션의 변경은 맵에도 반영해서 이후 조회가 변경된 값을 보게 한다
+ * 세이브포인트로 롤백하면 맵이 DB 와 달라지므로 SavepointSynchronization 으로 등록해서 롤백한 뒤에 비운다
+ * 리포지토리를 거치지 않고 DB 를 바꾼 쪽은 clearCurrent() 로 비운다
+ */
+public abstract class MemberIdentityMap {
+
+    private static Member get(DataSource dataSource, String memberId) {
+        Map<String, Member> members = current(dataSource, false);
+        if (members == null) {
+            return null;
+        }
+        Member member = members.get(memberId);
+        return member == null ? null : copy(member);
+    }
+
+    //맵에 있으면 맵의 값을, 없으면 loader 로 읽은 값을 맵에 넣고 돌려준다
+    static Member find(DataSource dataSource, String memberId, Function<String, Member> loader) {
+        Member cached = get(dataSource, memberId);
+        if (cached != null) {
+            return cached;
+        }
+        Member member = loader.apply(memberId);
+        put(dataSource, member);
+        return member;
+    }
+
+    static Optional<Member> findOptional(DataSource dataSource, String memberId,
+                                         Function<String, Optional<Member>> loader) {
+        Member cached = get(dataSource, memberId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Member> member = loader.apply(memberId);
+        member.ifPresent(found -> put(dataSource, found));
+        return member;
+    }
+
+    static boolean exists(DataSource dataSource, String memberId, Predicate<String> loader) {
+        return get(dataSource, memberId) != null || loader.test(memberId);
+    }
+
+    static void put(DataSource dataSource, Member member) {
+        Map<String, Member> members = current(dataSource, true);
+        if (members != null) {
+            members.put(member.getMemberId(), copy(member));
+        }
+    }
+
+    //맵에 있는 회원만 변경한다. DB 에서 버전이 1 올라가므로 맵도 같이 올린다
+    static void updateMoney(DataSource dataSource, String memberId, int money) {
+        Map<String, Member> members = current(dataSource, false);
+        if (members == null) {
+            return;
+        }
+        Member member = members.get(memberId);
+        if (member != null) {
+            member.setMoney(money);
+            member.setVersion(member.getVersion() + 1);
+        }
+    }
+
+    //버전 조건 갱신 결과를 반영한다. 충돌했으면 맵의 값도 오래된 것이므로 다음 조회는 DB 에서 읽는다
+    static void versionUpdated(DataSource dataSource, String memberId, int resultSize, int newMoney) {
+        if (resultSize == 0) {
+            evict(dataSource, memberId);
+        } else {
+            updateMoney(dataSource, memberId, newMoney);
+        }
+    }
+
+    static void evict(DataSource dataSource, String memberId) {
+        Map<String, Member> members = current(dataSource, false);
+        if (members != null) {
+            members.remove(memberId);
+        }
+    }
+
+    //현재 트랜잭션에 바인딩된 모든 identity map 을 비운다
+    public static void clearCurrent() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        for (Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+            if (resource instanceof Members) {
+                ((Members) resource).clear();
+            }
+        }
+    }
+
+    private static Map<String, Member> current(DataSource dataSource, boolean create) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+            || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Key key = new Key(dataSource);
+        Members members = (Members) TransactionSynchronizationManager.getResource(key);
+        if (members == null && create) {
+            Members created = new Members();
+            TransactionSynchronizationManager.bindResource(key, created);
+            TransactionSynchronizationManager.registerSynchronization(new SavepointSynchronization() {
+                @Override
+                public void afterRollbackToSavepoint() {
+                    created.clear();
+                }
+
+                //REQUIRES_NEW 로 바깥 트랜잭션이 보류되면 맵도 같이 보류한다
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResource(key);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(key, created);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(key);
+                }
+            });
+            members = created;
+        }
+        return members;
+    }
+
+    //호출한 쪽에서 변경해도 맵이 바뀌지 않도록 복사한다
+    private static Member copy(Member member) {
+        Member copy = new Member(member.getMemberId(), member.getMoney());
+        copy.setVersion(member.getVersion());
+        return copy;
+    }
+
+    private static class Members extends HashMap<String, Member> {
+    }
+
+    private static class Key {
+        private final DataSource dataSource;
+
+        private Key(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).dataSource == dataSource;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(dataSource);
+        }
+    }
+}
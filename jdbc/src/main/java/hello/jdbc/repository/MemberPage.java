@@ -0,0 +1,37 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * member_id 순서로 읽은 한 페이지
+ * 다음 페이지가 없으면 next 는 null 이다
+ */
+@Getter
+@ToString
+public class MemberPage {
+
+    private final List<Member> members;
+    private final PageToken next;
+
+    public MemberPage(List<Member> members, PageToken next) {
+        this.members = members;
+        this.next = next;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    //limit + 1 건을 조회한 결과로 페이지를 만든다. 남는 한 건이 있으면 다음 페이지가 있다
+    static MemberPage of(List<Member> rows, int limit) {
+        if (rows.size() <= limit) {
+            return new MemberPage(rows, null);
+        }
+        List<Member> members = rows.subList(0, limit);
+        return new MemberPage(members, new PageToken(members.get(limit - 1).getMemberId()));
+    }
+}
@@ -2,13 +2,60 @@ package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
 public interface MemberRepository {
+
+    //전체 순회 시 커서가 한번에 가져오는 row 수 기본값
+    int DEFAULT_FETCH_SIZE = 500;
+
     Member save(Member member);
 
+    //여러 건을 JDBC 배치로 저장한다
+    void saveAll(Collection<Member> members);
+
     Member findById(String memberId);
 
+    //없는 회원이면 예외 대신 빈 Optional 을 반환한다
+    Optional<Member> findOptionalById(String memberId);
+
+    boolean exists(String memberId);
+
+    //select ... for update 로 트랜잭션이 끝날 때까지 row 락을 잡고 조회한다
+    Member findByIdForUpdate(String memberId);
+
+    //존재하는 회원만 담아서 반환한다. 없는 키는 예외 없이 결과에서 빠진다
+    Map<String, Member> findByIds(Collection<String> memberIds);
+
+    //member_id 순서로 afterMemberId 다음부터 limit 건을 조회한다. afterMemberId 가 null 이면 첫 페이지
+    //OFFSET 대신 기본키로 바로 찾아가므로 페이지가 깊어져도 조회 시간이 일정하다
+    MemberPage findPage(String afterMemberId, int limit);
+
+    //전체 회원을 앞으로만 이동하는 커서로 순회한다
+    //트랜잭션 안에서 호출하면 트랜잭션 커넥션에서 커서를 연다
+    //action 에 넘기는 Member 는 row 마다 재사용되므로 보관하면 안 된다
+    default void forEach(Consumer<Member> action) {
+        forEach(DEFAULT_FETCH_SIZE, false, action);
+    }
+
+    //fetchSize 만큼씩 row 를 가져온다. copy 가 true 이면 row 마다 새 Member 를 넘긴다
+    void forEach(int fetchSize, boolean copy, Consumer<Member> action);
+
     void update(String memberId, int money);
 
+    //버전이 expectedVersion 일 때만 변경하고 버전을 올린다 (compare-and-set)
+    //충돌은 예외 없이 영향받은 row 수 0 으로 알려준다
+    int update(String memberId, long expectedVersion, int newMoney);
+
+    //money = money + delta 를 DB에서 원자적으로 수행한다. 영향받은 row 수를 반환한다 (0 이면 회원 없음)
+    int addMoney(String memberId, int delta);
+
+    //잔액이 amount 이상일 때만 차감한다. 영향받은 row 수를 반환한다 (0 이면 회원 없음 또는 잔액 부족)
+    int withdraw(String memberId, int amount);
+
     void delete(String memberId);
 
 }
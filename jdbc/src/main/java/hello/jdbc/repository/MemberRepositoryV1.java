@@ -1,6 +1,7 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.connection.DBConnectionUtil;
+import hello.jdbc.diagnostics.Diagnostics;
 import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.support.JdbcUtils;
@@ -93,7 +94,7 @@ public class MemberRepositoryV1 {
 
     public void update(String memberId, int money) throws SQLException {
         //업데이트 쿼리문
-        String sql = "update member set money=? where member_id=?";
+        String sql = "update member set money=?, version=version+1 where member_id=?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -106,7 +107,7 @@ public class MemberRepositoryV1 {
 
             //쿼리를 실행하고 영향받은 row 수 반환
             int resultSize = pstmt.executeUpdate();
-            log.info("resultSize={}", resultSize);
+            Diagnostics.updated(memberId, resultSize);
 
         } catch (SQLException e) {
             log.error("db error", e);
@@ -155,7 +156,7 @@ public class MemberRepositoryV1 {
     //커넥션 획득
     private Connection getConnection() throws SQLException {
         Connection connection = dataSource.getConnection();
-        log.info("get connection = {}, class = {}", connection,connection.getClass());
+        Diagnostics.connectionAcquired(connection);
         return connection;
     }
 
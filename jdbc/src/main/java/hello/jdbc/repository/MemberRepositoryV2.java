@@ -1,5 +1,6 @@
 package hello.jdbc.repository;
 
+import hello.jdbc.diagnostics.Diagnostics;
 import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.support.JdbcUtils;
@@ -126,7 +127,7 @@ public class MemberRepositoryV2 {
 
     public void update(String memberId, int money) throws SQLException {
         //업데이트 쿼리문
-        String sql = "update member set money=? where member_id=?";
+        String sql = "update member set money=?, version=version+1 where member_id=?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -139,7 +140,7 @@ public class MemberRepositoryV2 {
 
             //쿼리를 실행하고 영향받은 row 수 반환
             int resultSize = pstmt.executeUpdate();
-            log.info("resultSize={}", resultSize);
+            Diagnostics.updated(memberId, resultSize);
 
         } catch (SQLException e) {
             log.error("db error", e);
@@ -153,7 +154,7 @@ public class MemberRepositoryV2 {
 
     //커넥션을 주입받는 update
     public void update(Connection con, String memberId, int money) throws SQLException {
-        String sql = "update member set money=? where member_id=?";
+        String sql = "update member set money=?, version=version+1 where member_id=?";
 
         PreparedStatement pstmt = null;
         try {
@@ -163,7 +164,7 @@ public class MemberRepositoryV2 {
             pstmt.setString(2, memberId);
 
             int resultSize = pstmt.executeUpdate();
-            log.info("resultSize={}", resultSize);
+            Diagnostics.updated(memberId, resultSize);
 
         } catch (SQLException e) {
             log.error("db error", e);
@@ -213,7 +214,7 @@ public class MemberRepositoryV2 {
     //커넥션 획득
     private Connection getConnection() throws SQLException {
         Connection connection = dataSource.getConnection();
-        log.info("get connection = {}, class = {}", connection, connection.getClass());
+        Diagnostics.connectionAcquired(connection);
         return connection;
     }
 
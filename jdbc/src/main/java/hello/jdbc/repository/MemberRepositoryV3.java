@@ -1,5 +1,8 @@
 package hello.jdbc.repository;
 
+import hello.jdbc.diagnostics.ConnectionAcquireEvent;
+import hello.jdbc.diagnostics.ConnectionReleaseEvent;
+import hello.jdbc.diagnostics.Diagnostics;
 import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.datasource.DataSourceUtils;
@@ -95,7 +98,7 @@ public class MemberRepositoryV3 {
 
     public void update(String memberId, int money) throws SQLException {
         //업데이트 쿼리문
-        String sql = "update member set money=? where member_id=?";
+        String sql = "update member set money=?, version=version+1 where member_id=?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -108,7 +111,7 @@ public class MemberRepositoryV3 {
 
             //쿼리를 실행하고 영향받은 row 수 반환
             int resultSize = pstmt.executeUpdate();
-            log.info("resultSize={}", resultSize);
+            Diagnostics.updated(memberId, resultSize);
 
         } catch (SQLException e) {
             log.error("db error", e);
@@ -154,7 +157,10 @@ public class MemberRepositoryV3 {
         //DataSourceUtils.releaseConnection
         //트랜잭션을 사용하기 위해 동기화된 커넥션은 커넥션을 닫지 않고 그대로 유지한다
         //트랜잭션 동기화 매니저가 관리하는 커넥션이 없는 경우 해당 커넥션을 닫는다
+        ConnectionReleaseEvent event = new ConnectionReleaseEvent();
+        event.begin();
         DataSourceUtils.releaseConnection(con,dataSource);
+        event.end(con, dataSource);
 
     }
 
@@ -164,8 +170,11 @@ public class MemberRepositoryV3 {
         //DataSourceUtils.getConnection
         //트랜잭션 동기화 매니저가 관리하는 커넥션이 있으면 해당 커넥션을 반환한다
         //트랜잭션 동기화 매니저가 관리하는 커넥션이 없으면 새로운 커넥션을 생성해서 반환한다.
+        ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+        event.begin();
         Connection connection = DataSourceUtils.getConnection(dataSource);
-        log.info("get connection = {}, class = {}", connection, connection.getClass());
+        event.end(connection, dataSource);
+        Diagnostics.connectionAcquired(connection);
         return connection;
     }
 
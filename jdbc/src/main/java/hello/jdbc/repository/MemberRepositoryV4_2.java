@@ -1,5 +1,8 @@
 package hello.jdbc.repository;
 
+import hello.jdbc.diagnostics.ConnectionAcquireEvent;
+import hello.jdbc.diagnostics.ConnectionReleaseEvent;
+import hello.jdbc.diagnostics.Diagnostics;
 import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.datasource.DataSourceUtils;
@@ -9,7 +12,17 @@ import org.springframework.jdbc.support.SQLExceptionTranslator;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * SQLExceptionTranslator 추가
@@ -18,10 +31,23 @@ import java.util.NoSuchElementException;
 public class MemberRepositoryV4_2 implements MemberRepository {
 
     private final DataSource dataSource;
+    private final int batchSize;
+    //트랜잭션 밖에서 여러 청크를 병렬로 조회할 때 쓴다. null 이면 순서대로 조회한다
+    private final Executor lookupExecutor;
     private final SQLExceptionTranslator exTranslator;
 
     public MemberRepositoryV4_2(DataSource dataSource) {
+        this(dataSource, BatchSupport.DEFAULT_BATCH_SIZE);
+    }
+
+    public MemberRepositoryV4_2(DataSource dataSource, int batchSize) {
+        this(dataSource, batchSize, null);
+    }
+
+    public MemberRepositoryV4_2(DataSource dataSource, int batchSize, Executor lookupExecutor) {
         this.dataSource = dataSource;
+        this.batchSize = batchSize;
+        this.lookupExecutor = lookupExecutor;
         //spring exception을 에러코드를 기반으로 찾는다
         this.exTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
     }
@@ -39,6 +65,7 @@ public class MemberRepositoryV4_2 implements MemberRepository {
             pstmt.setString(1, member.getMemberId());
             pstmt.setInt(2, member.getMoney());
             pstmt.executeUpdate();
+            MemberIdentityMap.put(dataSource, member);
 
             return member;
         } catch (SQLException e) {
@@ -49,9 +76,57 @@ public class MemberRepositoryV4_2 implements MemberRepository {
 
     }
 
+    @Override
+    public void saveAll(Collection<Member> members) {
+        String sql = "insert into member(member_id, money) values (?, ?)";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            //같은 PreparedStatement를 재사용하고 batchSize 만큼 모아서 한번에 전송한다
+            //트랜잭션 밖에서 호출하면 실패한 청크 이전의 청크는 이미 반영되어 있다
+            for (List<Member> chunk : BatchSupport.chunk(members, batchSize)) {
+                for (Member member : chunk) {
+                    pstmt.setString(1, member.getMemberId());
+                    pstmt.setInt(2, member.getMoney());
+                    pstmt.addBatch();
+                }
+                executeBatch(pstmt, chunk, sql);
+                for (Member member : chunk) {
+                    MemberIdentityMap.put(dataSource, member);
+                }
+            }
+        } catch (SQLException e) {
+            throw exTranslator.translate("saveAll", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+
+    }
+
     @Override
     public Member findById(String memberId) {
-        String sql = "select * from member where member_id = ?";
+        //같은 트랜잭션에서 이미 조회한 회원이면 DB 에 가지 않는다
+        return MemberIdentityMap.find(dataSource, memberId, this::selectById);
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        //같은 트랜잭션에서 이미 조회한 회원이면 DB 에 가지 않는다
+        return MemberIdentityMap.findOptional(dataSource, memberId, this::selectOptionalById);
+    }
+
+    @Override
+    public boolean exists(String memberId) {
+        return MemberIdentityMap.exists(dataSource, memberId, this::selectExists);
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        String sql = "select * from member where member_id = ? for update";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -67,13 +142,113 @@ public class MemberRepositoryV4_2 implements MemberRepository {
                 Member member = new Member();
                 member.setMemberId(rs.getString("member_id"));
                 member.setMoney(rs.getInt("money"));
+                member.setVersion(rs.getLong("version"));
+                MemberIdentityMap.put(dataSource, member);
                 return member;
             } else {
                 throw new NoSuchElementException("member not found memberId=" + memberId);
             }
 
         } catch (SQLException e) {
-            throw exTranslator.translate("findById",sql,e);
+            throw exTranslator.translate("findByIdForUpdate", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+
+    }
+
+    @Override
+    public Map<String, Member> findByIds(Collection<String> memberIds) {
+        if (memberIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<List<String>> chunks = BatchSupport.chunk(new LinkedHashSet<>(memberIds), BatchSupport.IN_LIST_SIZE);
+
+        //트랜잭션 안에서는 트랜잭션 커넥션 하나로 청크를 순서대로 조회한다
+        if (!BatchSupport.canLookupInParallel(dataSource, lookupExecutor, chunks.size())) {
+            return findChunks(chunks);
+        }
+
+        //트랜잭션 밖에서는 청크마다 커넥션 풀에서 별도의 커넥션을 받아 병렬로 조회한다
+        List<CompletableFuture<Map<String, Member>>> futures = new ArrayList<>();
+        for (List<String> chunk : chunks) {
+            futures.add(CompletableFuture.supplyAsync(() -> findChunks(List.of(chunk)), lookupExecutor));
+        }
+        Map<String, Member> result = new HashMap<>();
+        for (CompletableFuture<Map<String, Member>> future : futures) {
+            result.putAll(BatchSupport.join(future));
+        }
+        return result;
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive limit=" + limit);
+        }
+        //다음 페이지가 있는지 알기 위해 한 건 더 조회한다
+        String sql = afterMemberId == null
+            ? "select member_id, money, version from member order by member_id limit ?"
+            : "select member_id, money, version from member where member_id > ? order by member_id limit ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            int index = 1;
+            if (afterMemberId != null) {
+                pstmt.setString(index++, afterMemberId);
+            }
+            pstmt.setInt(index, limit + 1);
+
+            rs = pstmt.executeQuery();
+            List<Member> rows = new ArrayList<>(limit + 1);
+            while (rs.next()) {
+                Member member = new Member();
+                member.setMemberId(rs.getString("member_id"));
+                member.setMoney(rs.getInt("money"));
+                member.setVersion(rs.getLong("version"));
+                rows.add(member);
+            }
+            return MemberPage.of(rows, limit);
+
+        } catch (SQLException e) {
+            throw exTranslator.translate("findPage", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+
+    }
+
+    @Override
+    public void forEach(int fetchSize, boolean copy, Consumer<Member> action) {
+        String sql = "select member_id, money, version from member";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            //앞으로만 이동하는 읽기 전용 커서, fetchSize 만큼씩 가져와서 전체 결과를 메모리에 올리지 않는다
+            pstmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(fetchSize);
+            rs = pstmt.executeQuery();
+
+            Member holder = new Member();
+            while (rs.next()) {
+                Member member = copy ? new Member() : holder;
+                member.setMemberId(rs.getString("member_id"));
+                member.setMoney(rs.getInt("money"));
+                member.setVersion(rs.getLong("version"));
+                action.accept(member);
+            }
+
+        } catch (SQLException e) {
+            throw exTranslator.translate("forEach", sql, e);
         } finally {
             close(con, pstmt, rs);
         }
@@ -82,7 +257,7 @@ public class MemberRepositoryV4_2 implements MemberRepository {
 
     @Override
     public void update(String memberId, int money) {
-        String sql = "update member set money=? where member_id=?";
+        String sql = "update member set money=?, version=version+1 where member_id=?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -93,7 +268,8 @@ public class MemberRepositoryV4_2 implements MemberRepository {
             pstmt.setInt(1, money);
             pstmt.setString(2, memberId);
             int resultSize = pstmt.executeUpdate();
-            log.info("resultSize={}", resultSize);
+            Diagnostics.updated(memberId, resultSize);
+            MemberIdentityMap.updateMoney(dataSource, memberId, money);
         } catch (SQLException e) {
             throw exTranslator.translate("update",sql,e);
         } finally {
@@ -102,6 +278,83 @@ public class MemberRepositoryV4_2 implements MemberRepository {
 
     }
 
+    @Override
+    public int update(String memberId, long expectedVersion, int newMoney) {
+        String sql = "update member set money=?, version=version+1 where member_id=? and version=?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setInt(1, newMoney);
+            pstmt.setString(2, memberId);
+            pstmt.setLong(3, expectedVersion);
+            int resultSize = pstmt.executeUpdate();
+            MemberIdentityMap.versionUpdated(dataSource, memberId, resultSize, newMoney);
+            return resultSize;
+        } catch (SQLException e) {
+            throw exTranslator.translate("update", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        //조회 후 계산하지 않고 DB에서 바로 더하므로 동시에 실행해도 갱신이 유실되지 않는다
+        String sql = "update member set money=money+?, version=version+1 where member_id=?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setInt(1, delta);
+            pstmt.setString(2, memberId);
+            //결과 값을 알 수 없으므로 맵에서 지운다
+            MemberIdentityMap.evict(dataSource, memberId);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw exTranslator.translate("addMoney", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+
+    }
+
+    @Override
+    public int withdraw(String memberId, int amount) {
+        if (amount <= 0) {
+            //음수를 허용하면 money>=? 검사를 그대로 통과해 출금이 입금이 된다
+            throw new IllegalArgumentException("출금 금액은 양수여야 함 amount=" + amount);
+        }
+        //잔액 검사와 차감을 한 문장으로 처리한다
+        String sql = "update member set money=money-?, version=version+1 where member_id=? and money>=?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setInt(1, amount);
+            pstmt.setString(2, memberId);
+            pstmt.setInt(3, amount);
+            //결과 값을 알 수 없으므로 맵에서 지운다
+            MemberIdentityMap.evict(dataSource, memberId);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw exTranslator.translate("withdraw", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+
+    }
+
     @Override
     public void delete(String memberId) {
         String sql = "delete from member where member_id=?";
@@ -114,6 +367,7 @@ public class MemberRepositoryV4_2 implements MemberRepository {
             pstmt = con.prepareStatement(sql);
             pstmt.setString(1, memberId);
             pstmt.executeUpdate();
+            MemberIdentityMap.evict(dataSource, memberId);
 
         } catch (SQLException e) {
             throw exTranslator.translate("delete",sql,e);
@@ -123,18 +377,154 @@ public class MemberRepositoryV4_2 implements MemberRepository {
 
     }
 
+    private Member selectById(String memberId) {
+        String sql = "select * from member where member_id = ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setString(1, memberId);
+
+            rs = pstmt.executeQuery();
+            if (rs.next()) {
+                Member member = new Member();
+                member.setMemberId(rs.getString("member_id"));
+                member.setMoney(rs.getInt("money"));
+                member.setVersion(rs.getLong("version"));
+                return member;
+            } else {
+                throw new NoSuchElementException("member not found memberId=" + memberId);
+            }
+
+        } catch (SQLException e) {
+            throw exTranslator.translate("findById",sql,e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+
+    }
+
+    private Optional<Member> selectOptionalById(String memberId) {
+        String sql = "select * from member where member_id = ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setString(1, memberId);
+
+            rs = pstmt.executeQuery();
+            //없는 회원마다 예외(스택 트레이스)를 만들지 않는다
+            if (rs.next()) {
+                Member member = new Member();
+                member.setMemberId(rs.getString("member_id"));
+                member.setMoney(rs.getInt("money"));
+                member.setVersion(rs.getLong("version"));
+                return Optional.of(member);
+            }
+            return Optional.empty();
+
+        } catch (SQLException e) {
+            throw exTranslator.translate("findOptionalById", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+
+    }
+
+    private boolean selectExists(String memberId) {
+        //기본키 인덱스만 확인한다
+        String sql = "select 1 from member where member_id = ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setString(1, memberId);
+
+            rs = pstmt.executeQuery();
+            return rs.next();
+
+        } catch (SQLException e) {
+            throw exTranslator.translate("exists", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+
+    }
+
+    //하나의 커넥션과 PreparedStatement 로 여러 청크를 조회한다
+    private Map<String, Member> findChunks(List<List<String>> chunks) {
+        String sql = "select * from member where member_id in " + BatchSupport.inList(BatchSupport.IN_LIST_SIZE);
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            Map<String, Member> result = new HashMap<>();
+            for (List<String> chunk : chunks) {
+                BatchSupport.bindInList(pstmt, chunk, BatchSupport.IN_LIST_SIZE);
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    Member member = new Member();
+                    member.setMemberId(rs.getString("member_id"));
+                    member.setMoney(rs.getInt("money"));
+                    member.setVersion(rs.getLong("version"));
+                    result.put(member.getMemberId(), member);
+                }
+                JdbcUtils.closeResultSet(rs);
+                rs = null;
+            }
+            return result;
+
+        } catch (SQLException e) {
+            throw exTranslator.translate("findByIds", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    private void executeBatch(PreparedStatement pstmt, List<Member> chunk, String sql) throws SQLException {
+        try {
+            pstmt.executeBatch();
+        } catch (BatchUpdateException e) {
+            //task 에 실패한 row를 담아서 변환된 예외 메시지로 어떤 row가 실패했는지 알 수 있게 한다
+            List<String> failed = BatchSupport.failedMemberIds(chunk, e);
+            throw exTranslator.translate("saveAll failedMemberIds=" + failed, sql, e);
+        }
+    }
+
     private void close(Connection con, Statement stmt, ResultSet rs) {
         JdbcUtils.closeResultSet(rs);
         JdbcUtils.closeStatement(stmt);
         //주의! 트랜잭션 동기화를 사용하려면 DataSourceUtils를 사용해야 한다.
+        ConnectionReleaseEvent event = new ConnectionReleaseEvent();
+        event.begin();
         DataSourceUtils.releaseConnection(con, dataSource);
+        event.end(con, dataSource);
     }
 
 
     private Connection getConnection() throws SQLException {
         //주의! 트랜잭션 동기화를 사용하려면 DataSourceUtils를 사용해야 한다.
+        ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+        event.begin();
         Connection con = DataSourceUtils.getConnection(dataSource);
-        log.info("get connection={}, class={}", con, con.getClass());
+        event.end(con, dataSource);
+        Diagnostics.connectionAcquired(con);
         return con;
     }
 
@@ -2,10 +2,25 @@ package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 
 import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * JDBC 템플릿 사용
@@ -15,38 +30,213 @@ import javax.sql.DataSource;
 @Slf4j
 public class MemberRepositoryV5 implements MemberRepository {
 
+    private final DataSource dataSource;
     private final JdbcTemplate template;
+    private final int batchSize;
+    //트랜잭션 밖에서 여러 청크를 병렬로 조회할 때 쓴다. null 이면 순서대로 조회한다
+    private final Executor lookupExecutor;
 
     public MemberRepositoryV5(DataSource dataSource) {
+        this(dataSource, BatchSupport.DEFAULT_BATCH_SIZE);
+    }
+
+    public MemberRepositoryV5(DataSource dataSource, int batchSize) {
+        this(dataSource, batchSize, null);
+    }
+
+    public MemberRepositoryV5(DataSource dataSource, int batchSize, Executor lookupExecutor) {
+        this.dataSource = dataSource;
         this.template = new JdbcTemplate(dataSource);
+        this.batchSize = batchSize;
+        this.lookupExecutor = lookupExecutor;
     }
 
     @Override
     public Member save(Member member) {
         String sql = "insert into member(member_id, money) values (?, ?)";
         template.update(sql, member.getMemberId(), member.getMoney());
+        MemberIdentityMap.put(dataSource, member);
         return member;
     }
 
+    @Override
+    public void saveAll(Collection<Member> members) {
+        String sql = "insert into member(member_id, money) values (?, ?)";
+        //청크를 직접 나눠야 실패한 배치가 어느 청크인지 알 수 있다
+        for (List<Member> chunk : BatchSupport.chunk(members, batchSize)) {
+            try {
+                template.batchUpdate(sql, chunk, chunk.size(), (ps, member) -> {
+                    ps.setString(1, member.getMemberId());
+                    ps.setInt(2, member.getMoney());
+                });
+            } catch (DuplicateKeyException e) {
+                List<String> failed = BatchSupport.failedMemberIds(chunk, e.getCause());
+                throw new DuplicateKeyException("duplicate key failedMemberIds=" + failed, e);
+            }
+            for (Member member : chunk) {
+                MemberIdentityMap.put(dataSource, member);
+            }
+        }
+    }
+
     @Override
     public Member findById(String memberId) {
-        String sql = "select * from member where member_id = ?";
-        return template.queryForObject(sql, memberRowMapper(), memberId);
+        //같은 트랜잭션에서 이미 조회한 회원이면 DB 에 가지 않는다
+        return MemberIdentityMap.find(dataSource, memberId, id -> {
+            String sql = "select * from member where member_id = ?";
+            return template.queryForObject(sql, memberRowMapper(), id);
+        });
+    }
 
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        //같은 트랜잭션에서 이미 조회한 회원이면 DB 에 가지 않는다
+        return MemberIdentityMap.findOptional(dataSource, memberId, id -> {
+            //queryForObject 는 결과가 없으면 EmptyResultDataAccessException 을 던지므로 query 로 조회한다
+            String sql = "select * from member where member_id = ?";
+            List<Member> members = template.query(sql, memberRowMapper(), id);
+            return members.isEmpty() ? Optional.empty() : Optional.of(members.get(0));
+        });
+    }
+
+    @Override
+    public boolean exists(String memberId) {
+        return MemberIdentityMap.exists(dataSource, memberId, id -> {
+            String sql = "select count(*) from member where member_id = ?";
+            Integer count = template.queryForObject(sql, Integer.class, id);
+            return count != null && count > 0;
+        });
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        String sql = "select * from member where member_id = ? for update";
+        Member member = template.queryForObject(sql, memberRowMapper(), memberId);
+        MemberIdentityMap.put(dataSource, member);
+        return member;
+    }
+
+    @Override
+    public Map<String, Member> findByIds(Collection<String> memberIds) {
+        if (memberIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<List<String>> chunks = BatchSupport.chunk(new LinkedHashSet<>(memberIds), BatchSupport.IN_LIST_SIZE);
+
+        //트랜잭션 안에서는 JdbcTemplate 이 트랜잭션 커넥션을 사용하므로 순서대로 조회한다
+        if (!BatchSupport.canLookupInParallel(dataSource, lookupExecutor, chunks.size())) {
+            Map<String, Member> result = new HashMap<>();
+            for (List<String> chunk : chunks) {
+                putAll(result, findChunk(chunk));
+            }
+            return result;
+        }
+
+        //트랜잭션 밖에서는 청크마다 별도의 커넥션으로 병렬 조회한다
+        List<CompletableFuture<List<Member>>> futures = new ArrayList<>();
+        for (List<String> chunk : chunks) {
+            futures.add(CompletableFuture.supplyAsync(() -> findChunk(chunk), lookupExecutor));
+        }
+        Map<String, Member> result = new HashMap<>();
+        for (CompletableFuture<List<Member>> future : futures) {
+            putAll(result, BatchSupport.join(future));
+        }
+        return result;
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive limit=" + limit);
+        }
+        //다음 페이지가 있는지 알기 위해 한 건 더 조회한다
+        List<Member> rows;
+        if (afterMemberId == null) {
+            String sql = "select member_id, money, version from member order by member_id limit ?";
+            rows = template.query(sql, memberRowMapper(), limit + 1);
+        } else {
+            String sql = "select member_id, money, version from member where member_id > ? order by member_id limit ?";
+            rows = template.query(sql, memberRowMapper(), afterMemberId, limit + 1);
+        }
+        return MemberPage.of(rows, limit);
+    }
+
+    @Override
+    public void forEach(int fetchSize, boolean copy, Consumer<Member> action) {
+        String sql = "select member_id, money, version from member";
+        //List 로 모으지 않고 row 마다 콜백으로 넘긴다
+        //JdbcTemplate 도 DataSourceUtils 로 커넥션을 얻으므로 트랜잭션 안에서는 같은 커넥션을 쓴다
+        PreparedStatementCreator cursor = con -> {
+            PreparedStatement pstmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(fetchSize);
+            return pstmt;
+        };
+        Member holder = new Member();
+        RowCallbackHandler handler = rs -> {
+            Member member = copy ? new Member() : holder;
+            member.setMemberId(rs.getString("member_id"));
+            member.setMoney(rs.getInt("money"));
+            member.setVersion(rs.getLong("version"));
+            action.accept(member);
+        };
+        template.query(cursor, handler);
     }
 
     @Override
     public void update(String memberId, int money) {
-        String sql = "update member set money=? where member_id=?";
+        String sql = "update member set money=?, version=version+1 where member_id=?";
         template.update(sql, money, memberId);
+        MemberIdentityMap.updateMoney(dataSource, memberId, money);
+
+    }
 
+    @Override
+    public int update(String memberId, long expectedVersion, int newMoney) {
+        String sql = "update member set money=?, version=version+1 where member_id=? and version=?";
+        int resultSize = template.update(sql, newMoney, memberId, expectedVersion);
+        MemberIdentityMap.versionUpdated(dataSource, memberId, resultSize, newMoney);
+        return resultSize;
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        //조회 후 계산하지 않고 DB에서 바로 더하므로 동시에 실행해도 갱신이 유실되지 않는다
+        String sql = "update member set money=money+?, version=version+1 where member_id=?";
+        //결과 값을 알 수 없으므로 맵에서 지운다
+        MemberIdentityMap.evict(dataSource, memberId);
+        return template.update(sql, delta, memberId);
+    }
+
+    @Override
+    public int withdraw(String memberId, int amount) {
+        if (amount <= 0) {
+            //음수를 허용하면 money>=? 검사를 그대로 통과해 출금이 입금이 된다
+            throw new IllegalArgumentException("출금 금액은 양수여야 함 amount=" + amount);
+        }
+        //잔액 검사와 차감을 한 문장으로 처리한다
+        String sql = "update member set money=money-?, version=version+1 where member_id=? and money>=?";
+        //결과 값을 알 수 없으므로 맵에서 지운다
+        MemberIdentityMap.evict(dataSource, memberId);
+        return template.update(sql, amount, memberId, amount);
     }
 
     @Override
     public void delete(String memberId) {
         String sql = "delete from member where member_id=?";
         template.update(sql, memberId);
+        MemberIdentityMap.evict(dataSource, memberId);
+
+    }
+
+    private List<Member> findChunk(List<String> chunk) {
+        String sql = "select * from member where member_id in " + BatchSupport.inList(BatchSupport.IN_LIST_SIZE);
+        return template.query(sql, memberRowMapper(), BatchSupport.inListArgs(chunk, BatchSupport.IN_LIST_SIZE));
+    }
 
+    private void putAll(Map<String, Member> result, List<Member> members) {
+        for (Member member : members) {
+            result.put(member.getMemberId(), member);
+        }
     }
 
     //resultSet이 나오면 Member로 변환해준다
@@ -55,6 +245,7 @@ public class MemberRepositoryV5 implements MemberRepository {
             Member member = new Member();
             member.setMemberId(rs.getString("member_id"));
             member.setMoney(rs.getInt("money"));
+            member.setVersion(rs.getLong("version"));
             return member;
         };
     }
@@ -0,0 +1,188 @@
+package hello.jdbc.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 없는 회원 캐시 데코레이터
+ * 없다고 확인된 memberId 를 짧은 시간 동안 기억해서 같은 키를 다시 조회할 때 DB 에 가지 않는다
+ *
+ * 회원이 저장되면 바로 지우고, 트랜잭션 안이면 커밋 후에 한번 더 지운다
+ * 커밋 전에 다른 스레드가 "없음" 을 다시 기록했을 수 있기 때문이다
+ *
+ * findById 의 없음은 findOptionalById 로 확인하고, 대상 저장소가 던지는 것과 같은 예외를 notFound 로 만들어 던진다
+ * 기본값은 JdbcTemplate 저장소(V5)와 같은 EmptyResultDataAccessException 이다
+ */
+@Slf4j
+public class NegativeCachingMemberRepository implements MemberRepository {
+
+    private final MemberRepository target;
+    private final Cache<String, Boolean> missing;
+    private final Function<String, ? extends RuntimeException> notFound;
+    private final LongAdder negativeHits = new LongAdder();
+
+    public NegativeCachingMemberRepository(MemberRepository target, long maximumSize, Duration ttl) {
+        this(target, maximumSize, ttl,
+            memberId -> new EmptyResultDataAccessException("member not found memberId=" + memberId, 1));
+    }
+
+    public NegativeCachingMemberRepository(MemberRepository target, long maximumSize, Duration ttl,
+                                           Function<String, ? extends RuntimeException> notFound) {
+        this.target = target;
+        this.notFound = notFound;
+        this.missing = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .build();
+    }
+
+    @Override
+    public Member save(Member member) {
+        Member saved = target.save(member);
+        forget(List.of(member.getMemberId()));
+        return saved;
+    }
+
+    @Override
+    public void saveAll(Collection<Member> members) {
+        target.saveAll(members);
+        List<String> memberIds = new ArrayList<>(members.size());
+        for (Member member : members) {
+            memberIds.add(member.getMemberId());
+        }
+        forget(memberIds);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        //대상 저장소와 같은 예외를 던져야 호출하는 쪽이 캐시 여부를 몰라도 된다
+        if (isKnownMissing(memberId)) {
+            throw notFound.apply(memberId);
+        }
+        Optional<Member> member = target.findOptionalById(memberId);
+        if (member.isEmpty()) {
+            remember(memberId);
+            throw notFound.apply(memberId);
+        }
+        return member.get();
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        if (isKnownMissing(memberId)) {
+            return Optional.empty();
+        }
+        Optional<Member> member = target.findOptionalById(memberId);
+        if (member.isEmpty()) {
+            remember(memberId);
+        }
+        return member;
+    }
+
+    @Override
+    public boolean exists(String memberId) {
+        if (isKnownMissing(memberId)) {
+            return false;
+        }
+        boolean exists = target.exists(memberId);
+        if (!exists) {
+            remember(memberId);
+        }
+        return exists;
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return target.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findByIds(Collection<String> memberIds) {
+        return target.findByIds(memberIds);
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        return target.findPage(afterMemberId, limit);
+    }
+
+    @Override
+    public void forEach(int fetchSize, boolean copy, Consumer<Member> action) {
+        target.forEach(fetchSize, copy, action);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        target.update(memberId, money);
+    }
+
+    @Override
+    public int update(String memberId, long expectedVersion, int newMoney) {
+        return target.update(memberId, expectedVersion, newMoney);
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        return target.addMoney(memberId, delta);
+    }
+
+    @Override
+    public int withdraw(String memberId, int amount) {
+        return target.withdraw(memberId, amount);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        target.delete(memberId);
+    }
+
+    //DB 에 가지 않고 없음으로 응답한 횟수
+    public long getNegativeHits() {
+        return negativeHits.sum();
+    }
+
+    private boolean isKnownMissing(String memberId) {
+        //트랜잭션 안에서는 자기가 방금 저장한 회원일 수 있으므로 항상 DB 를 본다
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return false;
+        }
+        if (missing.getIfPresent(memberId) != null) {
+            negativeHits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private void remember(String memberId) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            missing.put(memberId, Boolean.TRUE);
+        }
+    }
+
+    private void forget(Collection<String> memberIds) {
+        missing.invalidateAll(memberIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    missing.invalidateAll(memberIds);
+                }
+            });
+        }
+    }
+}
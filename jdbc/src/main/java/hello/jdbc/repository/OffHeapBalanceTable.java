@@ -0,0 +1,392 @@
+package hello.jdbc.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 힙 밖(direct ByteBuffer)에 memberId -> money, version 을 저장하는 해시 테이블
+ * 객체를 만들지 않으므로 수천만 건을 넣어도 힙 사용량과 GC 시간이 늘지 않는다
+ *
+ * 오픈 어드레싱(선형 탐사), 슬롯 하나는 고정 크기 32 바이트
+ * [상태 1][키 길이 1][memberId UTF-8 keyWidth][money 4][version 8]
+ * memberId 가 keyWidth 바이트보다 길면 저장하지 않는다
+ *
+ * 키 해시로 스트라이프를 고르고, 스트라이프마다 버퍼, StampedLock, 세대 번호를 따로 둔다
+ * 조회는 낙관적 읽기로 락 없이 처리하고, 쓰기는 그 키의 스트라이프만 배타 락을 잡는다
+ * 무효화도 그 스트라이프의 세대만 올리므로 다른 키의 캐시 적재를 막지 않는다
+ *
+ * 전체 항목 수가 maxEntries 에 닿으면 새 키가 들어갈 스트라이프에서 CLOCK(second chance)으로 하나를 내보내고 넣는다
+ * 조회된 슬롯은 참조 표시를 남기고, 시계 바늘이 지나갈 때 표시가 없는 슬롯을 내보낸다
+ * 해시가 한쪽으로 몰려 스트라이프가 슬롯의 3/4 까지 차도 같은 방법으로 내보낸다
+ */
+public class OffHeapBalanceTable {
+
+    public static final int KEY_WIDTH = 18;
+    private static final int SLOT_SIZE = 32;
+    private static final int STATE_OFFSET = 0;
+    private static final int LENGTH_OFFSET = 1;
+    private static final int KEY_OFFSET = 2;
+    private static final int MONEY_OFFSET = KEY_OFFSET + KEY_WIDTH;
+    private static final int VERSION_OFFSET = MONEY_OFFSET + 4;
+
+    private static final byte EMPTY = 0;
+    private static final byte FULL = 1;
+    private static final byte DELETED = 2;
+
+    //작은 테이블은 스트라이프를 나누지 않는다
+    private static final int MIN_ENTRIES_PER_STRIPE = 64;
+    private static final int MAX_STRIPES = 64;
+    //ByteBuffer 하나는 2GB 를 넘을 수 없으므로 스트라이프 하나를 1GB 이하로 잡는다
+    private static final long MAX_SLOTS_PER_STRIPE = 1L << 25;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final long maxEntries;
+    //스트라이프 락을 잡은 상태에서만 바꾼다. 서로 다른 스트라이프가 동시에 바꾸므로 원자적으로 센다
+    private final AtomicLong size = new AtomicLong();
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    //부하율 0.5 를 기준으로 스트라이프마다 슬롯 수를 2의 거듭제곱으로 잡는다
+    public OffHeapBalanceTable(long maxEntries) {
+        long count = Long.highestOneBit(Math.max(1, Math.min(MAX_STRIPES, maxEntries / MIN_ENTRIES_PER_STRIPE)));
+        long perStripe = (maxEntries + count - 1) / count;
+        while (slotsFor(perStripe) > MAX_SLOTS_PER_STRIPE) {
+            count <<= 1;
+            perStripe = (maxEntries + count - 1) / count;
+        }
+        this.stripes = new Stripe[(int) count];
+        this.stripeShift = 64 - Long.numberOfTrailingZeros(count);
+        this.maxEntries = maxEntries;
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe((int) slotsFor(perStripe));
+        }
+    }
+
+    /**
+     * memberId 가 속한 스트라이프의 세대 번호
+     * 무효화할 때마다 증가한다. DB 조회 중에 무효화가 끼어들면 오래된 값을 넣지 않기 위해 사용한다
+     */
+    public long generation(String memberId) {
+        byte[] key = encode(memberId);
+        return key == null ? 0 : stripe(hash(key)).generation;
+    }
+
+    /**
+     * 찾으면 true 를 반환하고 out[0] = money, out[1] = version 을 채운다
+     */
+    public boolean get(String memberId, long[] out) {
+        byte[] key = encode(memberId);
+        if (key == null) {
+            return false;
+        }
+        long hash = hash(key);
+        Stripe stripe = stripe(hash);
+        long stamp = stripe.lock.tryOptimisticRead();
+        boolean found = stripe.read(hash, key, out);
+        if (stripe.lock.validate(stamp)) {
+            return found;
+        }
+        //읽는 중에 쓰기가 있었으면 읽기 락으로 다시 읽는다
+        stamp = stripe.lock.readLock();
+        try {
+            return stripe.read(hash, key, out);
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    public void put(String memberId, int money, long version) {
+        putIfGeneration(memberId, money, version, -1);
+    }
+
+    //expectedGeneration 이후 이 키의 스트라이프에 무효화가 없었을 때만 저장한다. -1 이면 항상 저장한다
+    public boolean putIfGeneration(String memberId, int money, long version, long expectedGeneration) {
+        byte[] key = encode(memberId);
+        if (key == null) {
+            rejected.increment();
+            return false;
+        }
+        long hash = hash(key);
+        Stripe stripe = stripe(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            if (expectedGeneration != -1 && expectedGeneration != stripe.generation) {
+                return false;
+            }
+            long slot = stripe.findSlot(hash, key);
+            if (slot >= 0) {
+                stripe.writeValue((int) slot, money, version);
+                return true;
+            }
+            //이 스트라이프에 내보낼 항목이 없으면 그대로 넣는다. 그만큼은 maxEntries 를 넘을 수 있다
+            if ((size.get() >= maxEntries || stripe.size >= stripe.limit) && stripe.evictOne()) {
+                size.decrementAndGet();
+                evicted.increment();
+            }
+            int free = (int) (-slot - 1);
+            if (stripe.state(free) == DELETED) {
+                stripe.tombstones--;
+            }
+            stripe.writeEntry(free, key, money, version);
+            stripe.size++;
+            size.incrementAndGet();
+            stripe.compactIfNeeded();
+            return true;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(String memberId) {
+        byte[] key = encode(memberId);
+        if (key == null) {
+            return;
+        }
+        long hash = hash(key);
+        Stripe stripe = stripe(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            stripe.generation++;
+            long slot = stripe.findSlot(hash, key);
+            if (slot >= 0) {
+                stripe.delete((int) slot);
+                size.decrementAndGet();
+                stripe.compactIfNeeded();
+            }
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                stripe.generation++;
+                for (int slot = 0; slot < stripe.capacity; slot++) {
+                    stripe.buffer.put(slot * SLOT_SIZE + STATE_OFFSET, EMPTY);
+                }
+                size.addAndGet(-stripe.size);
+                stripe.size = 0;
+                stripe.tombstones = 0;
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    public long size() {
+        return size.get();
+    }
+
+    //힙 밖에 할당한 바이트 수
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += (long) stripe.capacity * (SLOT_SIZE + 1);
+        }
+        return bytes;
+    }
+
+    //키가 너무 길어서 저장하지 못한 수
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    //스트라이프가 가득 차서 내보낸 수
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    //FNV 의 상위 비트는 짧은 키끼리 잘 섞이지 않으므로 한 번 더 섞은 뒤 상위 비트를 쓴다
+    private Stripe stripe(long hash) {
+        return stripes.length == 1 ? stripes[0] : stripes[(int) ((hash * 0x9e3779b97f4a7c15L) >>> stripeShift)];
+    }
+
+    private static long slotsFor(long entries) {
+        return Long.highestOneBit(Math.max(16, entries * 2 - 1)) << 1;
+    }
+
+    private static byte[] encode(String memberId) {
+        byte[] key = memberId.getBytes(StandardCharsets.UTF_8);
+        return key.length <= KEY_WIDTH ? key : null;
+    }
+
+    private static long hash(byte[] key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h = (h ^ b) * 0x100000001b3L;
+        }
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * 독립된 오픈 어드레싱 테이블 하나. 필드는 lock 의 쓰기 락을 잡은 상태에서만 바꾼다
+     * referenced 는 조회가 락 없이 남기는 힌트라서 경합으로 유실되어도 된다
+     */
+    private static final class Stripe {
+
+        private final StampedLock lock = new StampedLock();
+        private final ByteBuffer buffer;
+        //슬롯마다 1 바이트. 이것도 힙 밖에 둔다
+        private final ByteBuffer referenced;
+        private final int capacity;
+        private final int mask;
+        private final int limit;
+
+        private long size;
+        private long tombstones;
+        private int hand;
+        private volatile long generation;
+
+        private Stripe(int capacity) {
+            this.buffer = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+            this.referenced = ByteBuffer.allocateDirect(capacity);
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.limit = capacity / 4 * 3;
+        }
+
+        private boolean read(long hash, byte[] key, long[] out) {
+            long slot = findSlot(hash, key);
+            if (slot < 0) {
+                return false;
+            }
+            int offset = (int) slot * SLOT_SIZE;
+            out[0] = buffer.getInt(offset + MONEY_OFFSET);
+            out[1] = buffer.getLong(offset + VERSION_OFFSET);
+            if (referenced.get((int) slot) == 0) {
+                referenced.put((int) slot, (byte) 1);
+            }
+            return true;
+        }
+
+        /**
+         * 키가 있으면 슬롯 번호, 없으면 -(넣을 수 있는 슬롯 + 1)
+         * 낙관적 읽기 중에는 값이 바뀔 수 있으므로 한 바퀴를 넘게 돌지 않는다
+         */
+        private long findSlot(long hash, byte[] key) {
+            int slot = (int) (hash & mask);
+            int firstDeleted = -1;
+            for (int probe = 0; probe < capacity; probe++) {
+                byte state = state(slot);
+                if (state == EMPTY) {
+                    return -(firstDeleted >= 0 ? firstDeleted : slot) - 1L;
+                }
+                if (state == DELETED) {
+                    if (firstDeleted < 0) {
+                        firstDeleted = slot;
+                    }
+                } else if (keyEquals(slot, key)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -(firstDeleted >= 0 ? firstDeleted : 0) - 1L;
+        }
+
+        //시계 바늘을 돌리며 참조 표시를 지우고, 표시가 없는 첫 슬롯을 내보낸다 (두 바퀴 안에 반드시 찾는다)
+        //비어 있는 스트라이프면 false
+        private boolean evictOne() {
+            for (int i = 0; i < capacity * 2; i++) {
+                int slot = hand;
+                hand = (hand + 1) & mask;
+                if (state(slot) != FULL) {
+                    continue;
+                }
+                if (referenced.get(slot) != 0) {
+                    referenced.put(slot, (byte) 0);
+                    continue;
+                }
+                delete(slot);
+                return true;
+            }
+            return false;
+        }
+
+        private void delete(int slot) {
+            buffer.put(slot * SLOT_SIZE + STATE_OFFSET, DELETED);
+            size--;
+            tombstones++;
+        }
+
+        //삭제 표시가 쌓이면 탐사가 길어지므로 다시 배치한다
+        private void compactIfNeeded() {
+            if (tombstones > capacity / 4) {
+                rehash();
+            }
+        }
+
+        private boolean keyEquals(int slot, byte[] key) {
+            int offset = slot * SLOT_SIZE;
+            if (buffer.get(offset + LENGTH_OFFSET) != key.length) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (buffer.get(offset + KEY_OFFSET + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void writeEntry(int slot, byte[] key, int money, long version) {
+            int offset = slot * SLOT_SIZE;
+            buffer.put(offset + LENGTH_OFFSET, (byte) key.length);
+            for (int i = 0; i < key.length; i++) {
+                buffer.put(offset + KEY_OFFSET + i, key[i]);
+            }
+            writeValue(slot, money, version);
+            //새로 넣은 항목이 바로 다음 바늘에 내보내지지 않도록 참조 표시를 남긴다
+            referenced.put(slot, (byte) 1);
+            //키와 값을 모두 쓴 뒤에 사용 중으로 표시한다
+            buffer.put(offset + STATE_OFFSET, FULL);
+        }
+
+        private void writeValue(int slot, int money, long version) {
+            int offset = slot * SLOT_SIZE;
+            buffer.putInt(offset + MONEY_OFFSET, money);
+            buffer.putLong(offset + VERSION_OFFSET, version);
+        }
+
+        //쓰기 락을 잡은 상태에서 호출한다. 살아 있는 항목만 모아 다시 넣는다
+        private void rehash() {
+            byte[][] keys = new byte[(int) size][];
+            int[] moneys = new int[(int) size];
+            long[] versions = new long[(int) size];
+            byte[] refs = new byte[(int) size];
+            int n = 0;
+            for (int slot = 0; slot < capacity; slot++) {
+                int offset = slot * SLOT_SIZE;
+                if (state(slot) == FULL) {
+                    byte[] key = new byte[buffer.get(offset + LENGTH_OFFSET)];
+                    for (int i = 0; i < key.length; i++) {
+                        key[i] = buffer.get(offset + KEY_OFFSET + i);
+                    }
+                    keys[n] = key;
+                    moneys[n] = buffer.getInt(offset + MONEY_OFFSET);
+                    versions[n] = buffer.getLong(offset + VERSION_OFFSET);
+                    refs[n] = referenced.get(slot);
+                    n++;
+                }
+                buffer.put(offset + STATE_OFFSET, EMPTY);
+            }
+            tombstones = 0;
+            //참조 표시도 옮겨야 다시 배치한 뒤에도 내보낼 순서가 유지된다
+            for (int i = 0; i < n; i++) {
+                int slot = (int) (-findSlot(hash(keys[i]), keys[i]) - 1);
+                writeEntry(slot, keys[i], moneys[i], versions[i]);
+                referenced.put(slot, refs[i]);
+            }
+        }
+
+        private byte state(int slot) {
+            return buffer.get(slot * SLOT_SIZE + STATE_OFFSET);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * 잔액 조회 캐시 데코레이터 (힙 밖 저장)
+ * CachingMemberRepository 와 같은 규칙으로 동작하지만 값을 OffHeapBalanceTable 에 저장한다
+ * 회원 수가 많아도 캐시가 힙을 차지하지 않으므로 GC 에 영향을 주지 않는다
+ *
+ * 변경은 트랜잭션이 커밋된 뒤에만 캐시에서 지운다
+ * 트랜잭션 안의 조회는 캐시를 거치지 않는다
+ */
+@Slf4j
+public class OffHeapCachingMemberRepository implements MemberRepository {
+
+    private final MemberRepository target;
+    private final OffHeapBalanceTable table;
+
+    public OffHeapCachingMemberRepository(MemberRepository target, long maxEntries) {
+        this(target, new OffHeapBalanceTable(maxEntries));
+    }
+
+    public OffHeapCachingMemberRepository(MemberRepository target, OffHeapBalanceTable table) {
+        this.target = target;
+        this.table = table;
+    }
+
+    @Override
+    public Member save(Member member) {
+        Member saved = target.save(member);
+        evict(member.getMemberId());
+        return saved;
+    }
+
+    @Override
+    public void saveAll(Collection<Member> members) {
+        target.saveAll(members);
+        List<String> memberIds = new ArrayList<>(members.size());
+        for (Member member : members) {
+            memberIds.add(member.getMemberId());
+        }
+        evictAll(memberIds);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return target.findById(memberId);
+        }
+        long[] value = new long[2];
+        if (table.get(memberId, value)) {
+            return toMember(memberId, value);
+        }
+        //조회하는 동안 무효화가 있었으면 캐시에 넣지 않는다
+        long generation = table.generation(memberId);
+        Member member = target.findById(memberId);
+        table.putIfGeneration(memberId, member.getMoney(), member.getVersion(), generation);
+        return member;
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return target.findOptionalById(memberId);
+        }
+        long[] value = new long[2];
+        if (table.get(memberId, value)) {
+            return Optional.of(toMember(memberId, value));
+        }
+        long generation = table.generation(memberId);
+        Optional<Member> member = target.findOptionalById(memberId);
+        member.ifPresent(m -> table.putIfGeneration(memberId, m.getMoney(), m.getVersion(), generation));
+        return member;
+    }
+
+    @Override
+    public boolean exists(String memberId) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive() && table.get(memberId, new long[2])) {
+            return true;
+        }
+        return target.exists(memberId);
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return target.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findByIds(Collection<String> memberIds) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return target.findByIds(memberIds);
+        }
+        Map<String, Member> result = new HashMap<>();
+        List<String> missingIds = new ArrayList<>();
+        long[] value = new long[2];
+        for (String memberId : memberIds) {
+            if (table.get(memberId, value)) {
+                result.put(memberId, toMember(memberId, value));
+            } else {
+                missingIds.add(memberId);
+            }
+        }
+        if (missingIds.isEmpty()) {
+            return result;
+        }
+        //캐시에 없는 키만 모아서 한번에 조회한다. 세대는 키가 속한 스트라이프마다 다르다
+        long[] generations = new long[missingIds.size()];
+        for (int i = 0; i < generations.length; i++) {
+            generations[i] = table.generation(missingIds.get(i));
+        }
+        Map<String, Member> found = target.findByIds(missingIds);
+        for (int i = 0; i < generations.length; i++) {
+            Member member = found.get(missingIds.get(i));
+            if (member != null) {
+                table.putIfGeneration(member.getMemberId(), member.getMoney(), member.getVersion(), generations[i]);
+            }
+        }
+        result.putAll(found);
+        return result;
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        return target.findPage(afterMemberId, limit);
+    }
+
+    @Override
+    public void forEach(int fetchSize, boolean copy, Consumer<Member> action) {
+        target.forEach(fetchSize, copy, action);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        target.update(memberId, money);
+        evict(memberId);
+    }
+
+    @Override
+    public int update(String memberId, long expectedVersion, int newMoney) {
+        int affected = target.update(memberId, expectedVersion, newMoney);
+        if (affected > 0) {
+            evict(memberId);
+        }
+        return affected;
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        int affected = target.addMoney(memberId, delta);
+        if (affected > 0) {
+            evict(memberId);
+        }
+        return affected;
+    }
+
+    @Override
+    public int withdraw(String memberId, int amount) {
+        int affected = target.withdraw(memberId, amount);
+        if (affected > 0) {
+            evict(memberId);
+        }
+        return affected;
+    }
+
+    @Override
+    public void delete(String memberId) {
+        target.delete(memberId);
+        evict(memberId);
+    }
+
+    public OffHeapBalanceTable table() {
+        return table;
+    }
+
+    private void evict(String memberId) {
+        evictAll(List.of(memberId));
+    }
+
+    private void evictAll(Collection<String> memberIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            memberIds.forEach(table::remove);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                memberIds.forEach(table::remove);
+            }
+        });
+    }
+
+    private Member toMember(String memberId, long[] value) {
+        Member member = new Member(memberId, (int) value[0]);
+        member.setVersion(value[1]);
+        return member;
+    }
+}
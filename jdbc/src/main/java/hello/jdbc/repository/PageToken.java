@@ -0,0 +1,37 @@
+package hello.jdbc.repository;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 키셋 페이지네이션의 다음 페이지 위치
+ * 마지막으로 읽은 member_id 를 담는다. 화면에는 encode() 한 불투명한 문자열로 넘긴다
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public class PageToken {
+
+    private final String afterMemberId;
+
+    public PageToken(String afterMemberId) {
+        this.afterMemberId = afterMemberId;
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(afterMemberId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageToken decode(String token) {
+        try {
+            return new PageToken(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid page token=" + token, e);
+        }
+    }
+}
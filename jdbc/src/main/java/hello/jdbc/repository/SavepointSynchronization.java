@@ -0,0 +1,43 @@
+package hello.jdbc.repository;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 세이브포인트를 알아야 하는 트랜잭션 범위 상태 (쓰기 지연된 변경, 1차 캐시)
+ * TransactionSynchronization 으로 등록해 두면 세이브포인트를 쓰는 쪽은 어떤 데코레이터가 감싸고 있는지 몰라도 된다
+ *
+ * 세이브포인트를 만들기 전에 triggerBeforeSavepoint(), 세이브포인트로 롤백한 뒤에 triggerAfterRollbackToSavepoint() 를 호출한다
+ */
+public interface SavepointSynchronization extends TransactionSynchronization {
+
+    //세이브포인트 앞의 변경이 롤백 범위에 섞이지 않도록 미뤄 둔 변경을 DB 에 보낸다
+    default void beforeSavepoint() {
+    }
+
+    //DB 는 세이브포인트 시점으로 돌아갔으므로 그 뒤에 쌓인 상태를 버린다
+    default void afterRollbackToSavepoint() {
+    }
+
+    static void triggerBeforeSavepoint() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof SavepointSynchronization) {
+                ((SavepointSynchronization) synchronization).beforeSavepoint();
+            }
+        }
+    }
+
+    static void triggerAfterRollbackToSavepoint() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof SavepointSynchronization) {
+                ((SavepointSynchronization) synchronization).afterRollbackToSavepoint();
+            }
+        }
+    }
+}
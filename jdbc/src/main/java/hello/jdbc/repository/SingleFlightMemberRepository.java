@@ -0,0 +1,183 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 동시 조회 합치기 (single flight)
+ * 트랜잭션 밖에서 같은 memberId 를 동시에 findById 하면 먼저 온 요청 하나만 DB 에 가고
+ * 나머지는 그 결과를 기다려서 같이 받는다. 커넥션도 하나만 사용한다
+ *
+ * 진행 중인 조회는 memberId 해시로 나눈 여러 맵(stripe)에 보관해서 하나의 락에 몰리지 않게 한다
+ * 트랜잭션 안의 조회는 자기 커넥션에서 봐야 하므로 합치지 않는다
+ */
+@Slf4j
+public class SingleFlightMemberRepository implements MemberRepository {
+
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final MemberRepository target;
+    private final ConcurrentHashMap<String, CompletableFuture<Member>>[] stripes;
+    private final int mask;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public SingleFlightMemberRepository(MemberRepository target) {
+        this(target, DEFAULT_STRIPES);
+    }
+
+    @SuppressWarnings("unchecked")
+    public SingleFlightMemberRepository(MemberRepository target, int stripes) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("stripes must be a power of two stripes=" + stripes);
+        }
+        this.target = target;
+        this.stripes = new ConcurrentHashMap[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ConcurrentHashMap<>();
+        }
+        this.mask = stripes - 1;
+    }
+
+    @Override
+    public Member save(Member member) {
+        return target.save(member);
+    }
+
+    @Override
+    public void saveAll(Collection<Member> members) {
+        target.saveAll(members);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return target.findById(memberId);
+        }
+        calls.increment();
+
+        ConcurrentHashMap<String, CompletableFuture<Member>> stripe = stripes[spread(memberId.hashCode()) & mask];
+        CompletableFuture<Member> mine = new CompletableFuture<>();
+        CompletableFuture<Member> inFlight = stripe.putIfAbsent(memberId, mine);
+        if (inFlight != null) {
+            //이미 같은 조회가 진행 중이면 그 결과를 기다린다
+            coalesced.increment();
+            return copy(join(inFlight));
+        }
+
+        try {
+            Member member = target.findById(memberId);
+            //호출한 쪽이 member 를 바꿔도 기다리던 요청이 바뀐 값을 받지 않도록 따로 복사해서 넘긴다
+            mine.complete(copy(member));
+            return member;
+        } catch (Throwable e) {
+            //Error 로 끝나도 기다리던 요청이 영원히 막히지 않게 한다
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            //완료된 조회는 바로 지워서 다음 요청은 최신 값을 읽게 한다
+            stripe.remove(memberId, mine);
+        }
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        return target.findOptionalById(memberId);
+    }
+
+    @Override
+    public boolean exists(String memberId) {
+        return target.exists(memberId);
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return target.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findByIds(Collection<String> memberIds) {
+        return target.findByIds(memberIds);
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        return target.findPage(afterMemberId, limit);
+    }
+
+    @Override
+    public void forEach(int fetchSize, boolean copy, Consumer<Member> action) {
+        target.forEach(fetchSize, copy, action);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        target.update(memberId, money);
+    }
+
+    @Override
+    public int update(String memberId, long expectedVersion, int newMoney) {
+        return target.update(memberId, expectedVersion, newMoney);
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        return target.addMoney(memberId, delta);
+    }
+
+    @Override
+    public int withdraw(String memberId, int amount) {
+        return target.withdraw(memberId, amount);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        target.delete(memberId);
+    }
+
+    //트랜잭션 밖 findById 호출 수
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    //DB 에 가지 않고 다른 조회 결과를 받은 호출 수
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static Member join(CompletableFuture<Member> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    //결과를 받은 호출자마다 따로 변경할 수 있도록 복사한다
+    private static Member copy(Member member) {
+        Member copy = new Member(member.getMemberId(), member.getMoney());
+        copy.setVersion(member.getVersion());
+        return copy;
+    }
+}
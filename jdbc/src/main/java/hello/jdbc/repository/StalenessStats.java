@@ -0,0 +1,38 @@
+package hello.jdbc.repository;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 오래된 값 허용 조회의 지표 스냅샷
+ * ageHistogram[i] - 제공한 값의 나이가 [2^i, 2^(i+1)) 밀리초인 조회 수 (0 은 1ms 미만 포함)
+ */
+@Getter
+@ToString
+public class StalenessStats {
+
+    private final long served;
+    private final long loads;
+    private final long refreshes;
+    private final long refreshFailures;
+    private final long idleEvictions;
+    private final long maxServedAgeMillis;
+    private final long[] ageHistogram;
+
+    public StalenessStats(long served, long loads, long refreshes, long refreshFailures, long idleEvictions,
+                          long maxServedAgeMillis, long[] ageHistogram) {
+        this.served = served;
+        this.loads = loads;
+        this.refreshes = refreshes;
+        this.refreshFailures = refreshFailures;
+        this.idleEvictions = idleEvictions;
+        this.maxServedAgeMillis = maxServedAgeMillis;
+        this.ageHistogram = ageHistogram;
+    }
+
+    //스냅샷에서 제공한 비율
+    public double snapshotRatio() {
+        long total = served + loads;
+        return total == 0 ? 0 : (double) served / total;
+    }
+}
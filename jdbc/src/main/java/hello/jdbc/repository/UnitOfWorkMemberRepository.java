@@ -0,0 +1,260 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 쓰기 지연 (unit of work)
+ * 트랜잭션 안의 update(memberId, money) 는 바로 DB 에 보내지 않고 변경된 회원으로 기록만 한다
+ * 같은 회원을 여러 번 변경하면 마지막 값 하나로 합치고, 커밋 직전(beforeCommit)에 JDBC 배치 하나로 보낸다
+ * 롤백되는 트랜잭션은 DB 에 아무것도 보내지 않는다
+ *
+ * 플러시 중 발생한 예외는 MemberRepositoryV4_2 와 같은 SQLErrorCodeSQLExceptionTranslator 로 변환한다
+ * 다른 쓰기나 여러 건 조회 전에는 기록된 변경을 먼저 플러시해서 실행 순서를 지킨다
+ *
+ * 기록된 변경은 JDBC 세이브포인트를 모르므로 SavepointSynchronization 으로 등록해서
+ * 세이브포인트를 만들기 전에 플러시하고, 세이브포인트로 롤백한 뒤에는 버린다
+ */
+@Slf4j
+public class UnitOfWorkMemberRepository implements MemberRepository {
+
+    private final MemberRepository target;
+    private final DataSource dataSource;
+    private final SQLExceptionTranslator exTranslator;
+
+    private final LongAdder coalescedUpdates = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+
+    public UnitOfWorkMemberRepository(MemberRepository target, DataSource dataSource) {
+        this.target = target;
+        this.dataSource = dataSource;
+        this.exTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+    }
+
+    @Override
+    public Member save(Member member) {
+        flush();
+        return target.save(member);
+    }
+
+    @Override
+    public void saveAll(Collection<Member> members) {
+        flush();
+        target.saveAll(members);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return applyDirty(target.findById(memberId));
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        return target.findOptionalById(memberId).map(this::applyDirty);
+    }
+
+    @Override
+    public boolean exists(String memberId) {
+        return target.exists(memberId);
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        flush();
+        return target.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findByIds(Collection<String> memberIds) {
+        flush();
+        return target.findByIds(memberIds);
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        flush();
+        return target.findPage(afterMemberId, limit);
+    }
+
+    @Override
+    public void forEach(int fetchSize, boolean copy, Consumer<Member> action) {
+        flush();
+        target.forEach(fetchSize, copy, action);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        if (unitOfWork == null) {
+            target.update(memberId, money);
+            return;
+        }
+        if (unitOfWork.dirty.put(memberId, money) != null) {
+            coalescedUpdates.increment();
+        }
+    }
+
+    @Override
+    public int update(String memberId, long expectedVersion, int newMoney) {
+        flush();
+        return target.update(memberId, expectedVersion, newMoney);
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        flush();
+        return target.addMoney(memberId, delta);
+    }
+
+    @Override
+    public int withdraw(String memberId, int amount) {
+        flush();
+        return target.withdraw(memberId, amount);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        flush();
+        target.delete(memberId);
+    }
+
+    //합쳐져서 DB 에 보내지 않은 update 수
+    public long getCoalescedUpdates() {
+        return coalescedUpdates.sum();
+    }
+
+    //플러시로 DB 에 보낸 row 수
+    public long getFlushedRows() {
+        return flushedRows.sum();
+    }
+
+    //아직 플러시하지 않은 변경이 있으면 조회 결과에 덮어쓴다
+    //플러시하면 DB 버전이 1 올라가므로 (여러 번 변경해도 한 row) 버전도 1 올려서 돌려준다
+    private Member applyDirty(Member member) {
+        UnitOfWork unitOfWork = existingUnitOfWork();
+        if (unitOfWork != null) {
+            Integer money = unitOfWork.dirty.get(member.getMemberId());
+            if (money != null) {
+                member.setMoney(money);
+                member.setVersion(member.getVersion() + 1);
+            }
+        }
+        return member;
+    }
+
+    private void flush() {
+        UnitOfWork unitOfWork = existingUnitOfWork();
+        if (unitOfWork != null) {
+            flush(unitOfWork);
+        }
+    }
+
+    private void flush(UnitOfWork unitOfWork) {
+        if (unitOfWork.dirty.isEmpty()) {
+            return;
+        }
+        String sql = "update member set money=?, version=version+1 where member_id=?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            //트랜잭션 커넥션을 그대로 사용한다
+            con = DataSourceUtils.getConnection(dataSource);
+            pstmt = con.prepareStatement(sql);
+            for (Map.Entry<String, Integer> entry : unitOfWork.dirty.entrySet()) {
+                pstmt.setInt(1, entry.getValue());
+                pstmt.setString(2, entry.getKey());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            flushedRows.add(unitOfWork.dirty.size());
+        } catch (SQLException e) {
+            throw exTranslator.translate("flush", sql, e);
+        } finally {
+            JdbcUtils.closeStatement(pstmt);
+            DataSourceUtils.releaseConnection(con, dataSource);
+        }
+
+        //1차 캐시에는 플러시 전 값이 남아 있을 수 있다
+        for (String memberId : unitOfWork.dirty.keySet()) {
+            MemberIdentityMap.evict(dataSource, memberId);
+        }
+        unitOfWork.dirty.clear();
+    }
+
+    private UnitOfWork existingUnitOfWork() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        return (UnitOfWork) TransactionSynchronizationManager.getResource(this);
+    }
+
+    //트랜잭션 안이면 현재 트랜잭션의 unit of work 를 반환한다. 처음이면 만들어서 바인딩한다
+    private UnitOfWork currentUnitOfWork() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+            || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        UnitOfWork unitOfWork = existingUnitOfWork();
+        if (unitOfWork == null) {
+            UnitOfWork created = new UnitOfWork();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new SavepointSynchronization() {
+                @Override
+                public void beforeSavepoint() {
+                    flush(created);
+                }
+
+                @Override
+                public void afterRollbackToSavepoint() {
+                    created.dirty.clear();
+                }
+
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResource(UnitOfWorkMemberRepository.this);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(UnitOfWorkMemberRepository.this, created);
+                }
+
+                //여기서 예외가 나면 커밋하지 않고 롤백한다
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    flush(created);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(UnitOfWorkMemberRepository.this);
+                }
+            });
+            unitOfWork = created;
+        }
+        return unitOfWork;
+    }
+
+    private static class UnitOfWork {
+        //변경 순서대로 플러시한다
+        private final Map<String, Integer> dirty = new LinkedHashMap<>();
+    }
+}
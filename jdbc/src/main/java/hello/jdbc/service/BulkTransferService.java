@@ -0,0 +1,101 @@
+package hello.jdbc.service;
+
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.SavepointSynchronization;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 대량 이체 - 트랜잭션 템플릿 + 세이브포인트
+ * groupSize 건씩 하나의 트랜잭션으로 묶어서 커밋 횟수를 줄인다
+ * 이체마다 세이브포인트를 만들어서 실패한 이체만 되돌리고 나머지는 커밋한다
+ */
+@Slf4j
+public class BulkTransferService {
+
+    public static final int DEFAULT_GROUP_SIZE = 100;
+
+    private final TransactionTemplate txTemplate;
+    private final MemberRepository memberRepository;
+    private final int groupSize;
+
+    public BulkTransferService(PlatformTransactionManager transactionManager, MemberRepository memberRepository) {
+        this(transactionManager, memberRepository, DEFAULT_GROUP_SIZE);
+    }
+
+    public BulkTransferService(PlatformTransactionManager transactionManager, MemberRepository memberRepository, int groupSize) {
+        if (groupSize <= 0) {
+            throw new IllegalArgumentException("groupSize must be positive groupSize=" + groupSize);
+        }
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.memberRepository = memberRepository;
+        this.groupSize = groupSize;
+    }
+
+    //요청 순서대로 결과를 반환한다
+    public List<TransferResult> transferAll(List<Transfer> transfers) {
+        List<TransferResult> results = new ArrayList<>(transfers.size());
+        for (int from = 0; from < transfers.size(); from += groupSize) {
+            List<Transfer> group = transfers.subList(from, Math.min(from + groupSize, transfers.size()));
+            results.addAll(transferGroup(group));
+        }
+        return results;
+    }
+
+    private List<TransferResult> transferGroup(List<Transfer> group) {
+        try {
+            return txTemplate.execute(status -> {
+                List<TransferResult> results = new ArrayList<>(group.size());
+                for (Transfer transfer : group) {
+                    //이체 한 건마다 JDBC 세이브포인트
+                    //쓰기 지연된 변경은 세이브포인트 앞에서 먼저 보내야 롤백 범위에 섞이지 않는다
+                    SavepointSynchronization.triggerBeforeSavepoint();
+                    Object savepoint = status.createSavepoint();
+                    try {
+                        bizLogic(transfer);
+                        status.releaseSavepoint(savepoint);
+                        results.add(TransferResult.success(transfer));
+                    } catch (RuntimeException e) {
+                        //이 이체만 되돌리고 같은 그룹의 다른 이체는 계속 진행한다
+                        status.rollbackToSavepoint(savepoint);
+                        status.releaseSavepoint(savepoint);
+                        //트랜잭션 범위 캐시와 쓰기 지연된 변경처럼 세이브포인트를 알아야 하는 상태에 알린다
+                        SavepointSynchronization.triggerAfterRollbackToSavepoint();
+                        log.info("이체 실패 transfer={}, error={}", transfer, e.getMessage());
+                        results.add(TransferResult.failure(transfer, e));
+                    }
+                }
+                return results;
+            });
+        } catch (RuntimeException e) {
+            //커밋 자체가 실패하면 그룹 전체가 반영되지 않았다
+            log.error("그룹 커밋 실패 size={}", group.size(), e);
+            List<TransferResult> results = new ArrayList<>(group.size());
+            for (Transfer transfer : group) {
+                results.add(TransferResult.failure(transfer, e));
+            }
+            return results;
+        }
+    }
+
+    private void bizLogic(Transfer transfer) {
+        if (memberRepository.withdraw(transfer.getFromId(), transfer.getMoney()) == 0) {
+            throw new IllegalStateException("출금 실패 - 회원이 없거나 잔액 부족 memberId=" + transfer.getFromId());
+        }
+
+        validation(transfer.getToId());
+        if (memberRepository.addMoney(transfer.getToId(), transfer.getMoney()) == 0) {
+            throw new IllegalStateException("입금 실패 - 회원이 없음 memberId=" + transfer.getToId());
+        }
+    }
+
+    private void validation(String toId) {
+        if (toId.equals("ex")) {
+            throw new IllegalStateException("이체중 예외 발생");
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package hello.jdbc.service;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 그룹 커밋 튜닝용 지표 스냅샷
+ * batchSizeHistogram[n] - 크기가 n 인 배치 수
+ * batchLatencyHistogram[i] - 배치 처리(이체 실행, 세이브포인트, 커밋) 시간이 [2^i, 2^(i+1)) 마이크로초인 배치 수
+ */
+@Getter
+@ToString
+public class GroupCommitStats {
+
+    private final int queueDepth;
+    private final long batches;
+    private final long transfers;
+    private final long[] batchSizeHistogram;
+    private final long[] batchLatencyHistogram;
+
+    public GroupCommitStats(int queueDepth, long batches, long transfers,
+                            long[] batchSizeHistogram, long[] batchLatencyHistogram) {
+        this.queueDepth = queueDepth;
+        this.batches = batches;
+        this.transfers = transfers;
+        this.batchSizeHistogram = batchSizeHistogram;
+        this.batchLatencyHistogram = batchLatencyHistogram;
+    }
+
+    public double averageBatchSize() {
+        return batches == 0 ? 0 : (double) transfers / batches;
+    }
+}
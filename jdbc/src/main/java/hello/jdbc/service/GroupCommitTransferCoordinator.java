@@ -0,0 +1,226 @@
+package hello.jdbc.service;
+
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 그룹 커밋 이체
+ * 호출한 스레드는 큐에 이체를 넣고 기다리기만 한다
+ * 커밋 전용 스레드가 최대 maxBatchSize 건 또는 maxWaitMicros 동안 모은 이체를
+ * 세이브포인트를 쓰는 하나의 트랜잭션으로 커밋하고, 커밋 후에 각 호출자의 future 를 완료한다
+ * 커밋(fsync) 한번을 여러 이체가 나눠 쓰므로 동시 호출이 많을 때 처리량이 올라간다
+ */
+@Slf4j
+public class GroupCommitTransferCoordinator implements AutoCloseable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    private final BulkTransferService bulkTransferService;
+    private final BlockingQueue<Request> queue;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Thread committer;
+    private volatile boolean running = true;
+
+    private final AtomicLongArray batchSizeHistogram;
+    private final AtomicLongArray batchLatencyHistogram = new AtomicLongArray(32);
+
+    public GroupCommitTransferCoordinator(PlatformTransactionManager transactionManager, MemberRepository memberRepository,
+                                          int maxBatchSize, long maxWaitMicros) {
+        this(transactionManager, memberRepository, maxBatchSize, maxWaitMicros, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public GroupCommitTransferCoordinator(PlatformTransactionManager transactionManager, MemberRepository memberRepository,
+                                          int maxBatchSize, long maxWaitMicros, int queueCapacity) {
+        //한 배치 전체를 하나의 트랜잭션으로 커밋한다
+        this.bulkTransferService = new BulkTransferService(transactionManager, memberRepository, maxBatchSize);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        this.batchSizeHistogram = new AtomicLongArray(maxBatchSize + 1);
+
+        this.committer = new Thread(this::runCommitter, "group-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    //커밋이 끝나면 완료되는 future 를 반환한다. 실패한 이체는 원인 예외로 완료된다
+    public CompletableFuture<Void> submit(String fromId, String toId, int money) {
+        Request request = new Request(new Transfer(fromId, toId, money));
+        if (!running) {
+            request.future.completeExceptionally(new IllegalStateException("coordinator closed"));
+        } else if (!queue.offer(request)) {
+            request.future.completeExceptionally(new IllegalStateException("group commit queue full"));
+        } else if (!running && queue.remove(request)) {
+            //running 을 확인한 뒤 close 가 큐를 다 비웠으면 아무도 이 요청을 처리하지 않는다
+            //remove 에 실패했다면 커밋 스레드나 close 가 이미 꺼내 갔으므로 그쪽에서 완료한다
+            request.future.completeExceptionally(new IllegalStateException("coordinator closed"));
+        }
+        return request.future;
+    }
+
+    //accountTransfer 와 같은 방식으로 쓸 수 있도록 커밋까지 기다린다
+    public void accountTransfer(String fromId, String toId, int money) {
+        try {
+            submit(fromId, toId, money).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public GroupCommitStats stats() {
+        return new GroupCommitStats(queue.size(), sum(batchSizeHistogram), weightedSum(batchSizeHistogram),
+            toArray(batchSizeHistogram), toArray(batchLatencyHistogram));
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //종료 직전에 들어온 이체는 처리되지 않았음을 알린다
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.future.completeExceptionally(new IllegalStateException("coordinator closed"));
+        }
+    }
+
+    private void runCommitter() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        boolean interrupted = false;
+        //종료 요청 후에도 큐에 남은 이체는 모두 처리한다
+        while (running || !queue.isEmpty()) {
+            if (interrupted) {
+                //인터럽트 상태에서 poll 은 바로 예외를 던지므로 기다리지 않고 남은 이체만 꺼낸다
+                queue.drainTo(batch, maxBatchSize);
+            } else {
+                try {
+                    collect(batch);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    running = false;
+                }
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+        //남은 이체를 커밋하는 동안 인터럽트가 JDBC 호출을 방해하지 않도록 끝난 뒤에 되돌린다
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //첫 이체가 들어오면 그때부터 maxWaitNanos 동안 또는 maxBatchSize 까지 모은다
+    private void collect(List<Request> batch) throws InterruptedException {
+        Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        queue.drainTo(batch, maxBatchSize - batch.size());
+
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatchSize - batch.size());
+        }
+    }
+
+    private void commit(List<Request> batch) {
+        List<Transfer> transfers = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            transfers.add(request.transfer);
+        }
+
+        long start = System.nanoTime();
+        List<TransferResult> results;
+        try {
+            results = bulkTransferService.transferAll(transfers);
+        } catch (Throwable e) {
+            //Error 로 커밋 스레드가 죽으면 이후 호출자가 모두 기다리기만 하므로 배치만 실패시키고 계속 돈다
+            log.error("그룹 커밋 실패 size={}", batch.size(), e);
+            for (Request request : batch) {
+                request.future.completeExceptionally(e);
+            }
+            return;
+        }
+        long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+
+        batchSizeHistogram.incrementAndGet(batch.size());
+        batchLatencyHistogram.incrementAndGet(log2Bucket(elapsedMicros));
+
+        //커밋이 끝난 뒤에 호출자를 깨운다
+        for (int i = 0; i < batch.size(); i++) {
+            TransferResult result = results.get(i);
+            if (result.isSuccess()) {
+                batch.get(i).future.complete(null);
+            } else {
+                batch.get(i).future.completeExceptionally(result.getError());
+            }
+        }
+    }
+
+    private static int log2Bucket(long micros) {
+        return micros <= 1 ? 0 : Math.min(31, 63 - Long.numberOfLeadingZeros(micros));
+    }
+
+    private static long[] toArray(AtomicLongArray array) {
+        long[] result = new long[array.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = array.get(i);
+        }
+        return result;
+    }
+
+    private static long sum(AtomicLongArray array) {
+        long sum = 0;
+        for (int i = 0; i < array.length(); i++) {
+            sum += array.get(i);
+        }
+        return sum;
+    }
+
+    //배치 크기 히스토그램에서 전체 이체 수를 구한다
+    private static long weightedSum(AtomicLongArray array) {
+        long sum = 0;
+        for (int i = 0; i < array.length(); i++) {
+            sum += i * array.get(i);
+        }
+        return sum;
+    }
+
+    private static class Request {
+        private final Transfer transfer;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Request(Transfer transfer) {
+            this.transfer = transfer;
+        }
+    }
+}
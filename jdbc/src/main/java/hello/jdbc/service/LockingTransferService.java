@@ -0,0 +1,153 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.ex.MyDbException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 비관적 락 이체 - select ... for update
+ * 두 row 를 항상 member_id 순서로 잠가서 A->B, B->A 동시 이체에서도 교착 상태가 생기지 않는다
+ *
+ * 락 타임아웃, 데드락은 리포지토리의 SQLExceptionTranslator 가
+ * CannotAcquireLockException, DeadlockLoserDataAccessException 으로 변환한다 (MemberRepositoryV4_2, V5)
+ * 둘 다 PessimisticLockingFailureException 이므로 트랜잭션 전체를 지터가 있는 지수 백오프로 재시도한다
+ * MemberRepositoryV4_1 처럼 MyDbException 으로 감싸서 던지는 리포지토리는 원인 SQLException 을 같은 방식으로 변환해서 판단한다
+ */
+@Slf4j
+public class LockingTransferService {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final long DEFAULT_BASE_BACKOFF_MILLIS = 10;
+    public static final long MAX_BACKOFF_MILLIS = 1000;
+
+    private final TransactionTemplate txTemplate;
+    private final MemberRepository memberRepository;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final SQLExceptionTranslator exTranslator;
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder lockWaitNanos = new LongAdder();
+    private final LongAdder backoffNanos = new LongAdder();
+
+    public LockingTransferService(PlatformTransactionManager transactionManager, MemberRepository memberRepository) {
+        this(transactionManager, memberRepository, DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_BACKOFF_MILLIS);
+    }
+
+    public LockingTransferService(PlatformTransactionManager transactionManager, MemberRepository memberRepository,
+                                  int maxAttempts, long baseBackoffMillis) {
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.memberRepository = memberRepository;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        //DB 별 에러 코드를 알려면 DataSource 가 필요하다. 없으면 SQLState 로 판단한다
+        this.exTranslator = transactionManager instanceof DataSourceTransactionManager
+            ? new SQLErrorCodeSQLExceptionTranslator(((DataSourceTransactionManager) transactionManager).getDataSource())
+            : new SQLErrorCodeSQLExceptionTranslator();
+    }
+
+    //재시도마다 새 트랜잭션을 시작해야 하므로 트랜잭션 바깥에서 반복한다
+    public void accountTransfer(String fromId, String toId, int money) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                txTemplate.executeWithoutResult(status -> bizLogic(fromId, toId, money));
+                return;
+            } catch (RuntimeException e) {
+                if (!isLockFailure(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    throw e;
+                }
+                retries.increment();
+                log.info("락 획득 실패 재시도 attempt={}, error={}", attempt, e.getClass().getSimpleName());
+                backoff(attempt);
+            }
+        }
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+
+    public long getLockWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lockWaitNanos.sum());
+    }
+
+    public long getBackoffMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(backoffNanos.sum());
+    }
+
+    private void bizLogic(String fromId, String toId, int money) {
+        //항상 작은 member_id 부터 잠근다
+        boolean fromFirst = fromId.compareTo(toId) <= 0;
+        Member first;
+        Member second;
+        long start = System.nanoTime();
+        try {
+            first = memberRepository.findByIdForUpdate(fromFirst ? fromId : toId);
+            second = memberRepository.findByIdForUpdate(fromFirst ? toId : fromId);
+        } finally {
+            //락 타임아웃이나 데드락으로 끝난 대기도 센다
+            lockWaitNanos.add(System.nanoTime() - start);
+        }
+
+        Member fromMember = fromFirst ? first : second;
+        Member toMember = fromFirst ? second : first;
+
+        memberRepository.update(fromId, fromMember.getMoney() - money);
+        validation(toMember.getMemberId());
+        memberRepository.update(toId, toMember.getMoney() + money);
+    }
+
+    private boolean isLockFailure(RuntimeException e) {
+        if (e instanceof PessimisticLockingFailureException) {
+            return true;
+        }
+        if (e instanceof MyDbException && e.getCause() instanceof SQLException) {
+            DataAccessException translated = exTranslator.translate("accountTransfer", null, (SQLException) e.getCause());
+            return translated instanceof PessimisticLockingFailureException;
+        }
+        return false;
+    }
+
+    //full jitter: 0 ~ min(max, base * 2^(attempt-1)) 사이에서 무작위로 기다린다
+    private void backoff(int attempt) {
+        long cap = Math.min(MAX_BACKOFF_MILLIS, baseBackoffMillis << Math.min(attempt - 1, 20));
+        long sleepMillis = ThreadLocalRandom.current().nextLong(cap + 1);
+        long start = System.nanoTime();
+        try {
+            Thread.sleep(sleepMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("재시도 대기 중 인터럽트", e);
+        } finally {
+            backoffNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private void validation(String toId) {
+        if (toId.equals("ex")) {
+            throw new IllegalStateException("이체중 예외 발생");
+        }
+    }
+}
@@ -3,6 +3,7 @@ package hello.jdbc.service;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.MemberRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -14,10 +15,18 @@ import org.springframework.transaction.annotation.Transactional;
 @Slf4j
 public class MemberServiceV4 {
 
+    public static final int DEFAULT_OPTIMISTIC_ATTEMPTS = 5;
+
     private final MemberRepository memberRepository;
+    private final int optimisticAttempts;
 
     public MemberServiceV4(MemberRepository memberRepository) {
+        this(memberRepository, DEFAULT_OPTIMISTIC_ATTEMPTS);
+    }
+
+    public MemberServiceV4(MemberRepository memberRepository, int optimisticAttempts) {
         this.memberRepository = memberRepository;
+        this.optimisticAttempts = optimisticAttempts;
     }
 
     @Transactional
@@ -25,18 +34,75 @@ public class MemberServiceV4 {
         bizLogic(fromId, toId, money);
     }
 
+    //조회 없이 증감 update 두 번으로 이체한다 (4번 -> 2번 왕복)
+    //잔액 검사도 DB에서 하므로 격리 수준을 올리지 않아도 동시 이체에서 갱신이 유실되지 않는다
+    @Transactional
+    public void accountTransferDelta(String fromId, String toId, int money) {
+        validateAmount(money);
+        if (memberRepository.withdraw(fromId, money) == 0) {
+            throw new IllegalStateException("출금 실패 - 회원이 없거나 잔액 부족 memberId=" + fromId);
+        }
+
+        validation(toId);
+        if (memberRepository.addMoney(toId, money) == 0) {
+            throw new IllegalStateException("입금 실패 - 회원이 없음 memberId=" + toId);
+        }
+    }
+
+    //낙관적 락 이체 - row 락 없이 읽고, 버전이 그대로일 때만 쓴다
+    //출금이 반영되면 그 row 는 이 트랜잭션이 잡고 있으므로, 입금 쪽 충돌은 입금만 다시 시도하면 된다
+    @Transactional
+    public void accountTransferOptimistic(String fromId, String toId, int money) {
+        validateAmount(money);
+        int attempts = 0;
+
+        while (true) {
+            Member fromMember = memberRepository.findById(fromId);
+            if (memberRepository.update(fromId, fromMember.getVersion(), fromMember.getMoney() - money) == 1) {
+                break;
+            }
+            checkAttempts(++attempts, fromId);
+        }
+
+        validation(toId);
+
+        while (true) {
+            Member toMember = memberRepository.findById(toId);
+            if (memberRepository.update(toId, toMember.getVersion(), toMember.getMoney() + money) == 1) {
+                break;
+            }
+            checkAttempts(++attempts, toId);
+        }
+    }
+
+    //충돌이 잦을 때 충돌마다 INFO 로그를 남기지 않는다. 재시도를 다 쓴 경우만 INFO 로 남긴다
+    private void checkAttempts(int attempts, String memberId) {
+        log.debug("버전 충돌 memberId={}, attempts={}", memberId, attempts);
+        if (attempts >= optimisticAttempts) {
+            log.info("버전 충돌 재시도 초과 memberId={}, attempts={}", memberId, attempts);
+            throw new OptimisticLockingFailureException("버전 충돌 재시도 초과 memberId=" + memberId);
+        }
+    }
+
+    //음수를 허용하면 이체 방향이 뒤집힌다
+    private void validateAmount(int money) {
+        if (money <= 0) {
+            throw new IllegalArgumentException("이체 금액은 양수여야 함 money=" + money);
+        }
+    }
+
     private void bizLogic(String fromId, String toId, int money) {
         Member fromMember = memberRepository.findById(fromId);
         Member toMember = memberRepository.findById(toId);
 
         memberRepository.update(fromId, fromMember.getMoney() - money);
 
-        validation(toMember);
+        validation(toMember.getMemberId());
         memberRepository.update(toId, toMember.getMoney() + money);
     }
 
-    private void validation(Member toMember) {
-        if (toMember.getMemberId().equals("ex")) {
+    private void validation(String toId) {
+        if (toId.equals("ex")) {
             throw new IllegalStateException("이체중 예외 발생");
         }
     }
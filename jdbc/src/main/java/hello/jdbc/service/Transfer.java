@@ -0,0 +1,24 @@
+package hello.jdbc.service;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 이체 요청 한 건
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public class Transfer {
+
+    private final String fromId;
+    private final String toId;
+    private final int money;
+
+    public Transfer(String fromId, String toId, int money) {
+        this.fromId = fromId;
+        this.toId = toId;
+        this.money = money;
+    }
+}
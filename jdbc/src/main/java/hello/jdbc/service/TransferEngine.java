@@ -0,0 +1,89 @@
+package hello.jdbc.service;
+
+import hello.jdbc.repository.MemberIdentityMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * 단일 SQL 이체 엔진
+ * 회원을 먼저 조회하지 않고, 영향받은 row 수로 회원 존재 여부와 잔액 부족을 판단한다
+ *
+ * SINGLE_STATEMENT - CASE 를 사용한 update 한 문장으로 두 계좌를 동시에 변경한다
+ * BATCH - CASE 를 쓸 수 없을 때, 같은 증감 update 를 파라미터만 바꿔 addBatch 로 한번에 보낸다
+ */
+@Slf4j
+public class TransferEngine {
+
+    public enum Mode {
+        SINGLE_STATEMENT, BATCH
+    }
+
+    //출금 계좌는 잔액이 충분할 때만 변경된다. 잠금을 잡은 row 자체의 값으로 검사하므로 동시 이체에도 안전하다
+    private static final String TRANSFER_SQL = "update member " +
+        "set money = case when member_id = ? then money - ? else money + ? end, version = version + 1 " +
+        "where member_id in (?, ?) and (member_id <> ? or money >= ?)";
+
+    //출금은 delta 가 음수, 입금은 양수. 잔액이 음수가 되는 출금은 반영되지 않는다
+    private static final String DELTA_SQL = "update member set money = money + ?, version = version + 1 where member_id = ? and money + ? >= 0";
+
+    private final JdbcTemplate template;
+    private final TransactionTemplate txTemplate;
+    private final Mode mode;
+
+    public TransferEngine(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this(dataSource, transactionManager, Mode.SINGLE_STATEMENT);
+    }
+
+    public TransferEngine(DataSource dataSource, PlatformTransactionManager transactionManager, Mode mode) {
+        this.template = new JdbcTemplate(dataSource);
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.mode = mode;
+    }
+
+    public void transfer(String fromId, String toId, int money) {
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("같은 계좌로 이체할 수 없음 memberId=" + fromId);
+        }
+        if (money <= 0) {
+            throw new IllegalArgumentException("이체 금액은 양수여야 함 money=" + money);
+        }
+
+        //한쪽만 반영된 경우 예외로 롤백해야 하므로 트랜잭션 안에서 실행한다
+        txTemplate.executeWithoutResult(status -> {
+            if (mode == Mode.SINGLE_STATEMENT) {
+                transferSingleStatement(fromId, toId, money);
+            } else {
+                transferBatch(fromId, toId, money);
+            }
+            //리포지토리를 거치지 않고 변경했으므로 바깥 트랜잭션의 1차 캐시를 비운다
+            MemberIdentityMap.clearCurrent();
+        });
+    }
+
+    private void transferSingleStatement(String fromId, String toId, int money) {
+        int affected = template.update(TRANSFER_SQL, fromId, money, money, fromId, toId, fromId, money);
+        //두 계좌가 모두 변경되어야 성공. 1 이하면 회원이 없거나 잔액 부족
+        if (affected != 2) {
+            throw new IllegalStateException("이체 실패 - 회원이 없거나 잔액 부족 fromId=" + fromId
+                + ", toId=" + toId + ", affected=" + affected);
+        }
+    }
+
+    private void transferBatch(String fromId, String toId, int money) {
+        List<Object[]> args = List.of(
+            new Object[]{-money, fromId, -money},
+            new Object[]{money, toId, money});
+        int[] affected = template.batchUpdate(DELTA_SQL, args);
+        if (affected[0] == 0) {
+            throw new IllegalStateException("출금 실패 - 회원이 없거나 잔액 부족 memberId=" + fromId);
+        }
+        if (affected[1] == 0) {
+            throw new IllegalStateException("입금 실패 - 회원이 없음 memberId=" + toId);
+        }
+    }
+}
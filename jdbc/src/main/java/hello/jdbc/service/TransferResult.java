@@ -0,0 +1,31 @@
+package hello.jdbc.service;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 이체 요청 한 건의 처리 결과
+ * 실패한 경우 error 에 원인 예외가 담긴다
+ */
+@Getter
+@ToString
+public class TransferResult {
+
+    private final Transfer transfer;
+    private final boolean success;
+    private final RuntimeException error;
+
+    private TransferResult(Transfer transfer, boolean success, RuntimeException error) {
+        this.transfer = transfer;
+        this.success = success;
+        this.error = error;
+    }
+
+    public static TransferResult success(Transfer transfer) {
+        return new TransferResult(transfer, true, null);
+    }
+
+    public static TransferResult failure(Transfer transfer, RuntimeException error) {
+        return new TransferResult(transfer, false, error);
+    }
+}
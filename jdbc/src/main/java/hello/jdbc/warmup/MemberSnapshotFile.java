@@ -0,0 +1,155 @@
+package hello.jdbc.warmup;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/**
+ * 자주 조회되는 memberId 목록을 저장하는 바이너리 파일
+ *
+ * 헤더 32 바이트 [magic 4][format version 4][createdAt epoch millis 8][count 4][body length 4][CRC32 8]
+ * 본문은 id 마다 [UTF-8 길이 2][UTF-8 바이트]
+ * CRC 는 헤더의 앞 24 바이트와 본문을 함께 계산한다. 헤더의 createdAt, count 가 깨져도 알아챈다
+ *
+ * 잔액은 파일을 쓴 뒤에도 바뀌므로 id 만 저장하고, 값은 시작할 때 DB 에서 다시 읽는다
+ * 읽을 때는 파일을 메모리 매핑하고, 형식이 다르거나 CRC 가 맞지 않거나
+ * maxAge 보다 오래되었거나 미래에 만들어진 것으로 되어 있거나 count 가 본문과 맞지 않으면 버린다
+ */
+@Slf4j
+public abstract class MemberSnapshotFile {
+
+    static final int MAGIC = 0x4D534E50;
+    //2 부터 CRC 에 헤더가 포함된다
+    static final int FORMAT_VERSION = 2;
+    static final int HEADER_SIZE = 32;
+    static final int CRC_OFFSET = 24;
+
+    public static void write(Path path, Collection<String> memberIds, Clock clock) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(memberIds.size());
+        int bodyLength = 0;
+        for (String memberId : memberIds) {
+            byte[] bytes = memberId.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            bodyLength += 2 + bytes.length;
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(bodyLength);
+        for (byte[] bytes : encoded) {
+            body.putShort((short) bytes.length);
+            body.put(bytes);
+        }
+        body.flip();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(FORMAT_VERSION);
+        header.putLong(clock.millis());
+        header.putInt(encoded.size());
+        header.putInt(bodyLength);
+        header.putLong(checksum(header, body));
+        header.flip();
+
+        //쓰는 도중에 죽어도 이전 파일이 남도록 임시 파일에 쓰고 바꿔치기한다
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    //쓸 수 없는 파일이면 이유를 남기고 빈 값을 반환한다
+    public static Optional<List<String>> read(Path path, Duration maxAge, Clock clock) throws IOException {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                log.warn("스냅샷 파일이 너무 작음 path={} size={}", path, size);
+                return Optional.empty();
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int magic = buffer.getInt();
+            int version = buffer.getInt();
+            long createdAt = buffer.getLong();
+            int count = buffer.getInt();
+            int bodyLength = buffer.getInt();
+            long checksum = buffer.getLong();
+
+            if (magic != MAGIC || version != FORMAT_VERSION) {
+                log.warn("스냅샷 형식이 다름 path={} magic={} version={}", path, magic, version);
+                return Optional.empty();
+            }
+            Duration age = Duration.ofMillis(clock.millis() - createdAt);
+            if (age.isNegative()) {
+                log.warn("스냅샷 생성 시각이 미래임 path={} createdAt={}", path, createdAt);
+                return Optional.empty();
+            }
+            if (age.compareTo(maxAge) > 0) {
+                log.info("스냅샷이 오래되어 버림 path={} age={} maxAge={}", path, age, maxAge);
+                return Optional.empty();
+            }
+            if (bodyLength != size - HEADER_SIZE) {
+                log.warn("스냅샷 길이가 맞지 않음 path={} bodyLength={} size={}", path, bodyLength, size);
+                return Optional.empty();
+            }
+            if (checksum(buffer, buffer) != checksum) {
+                log.warn("스냅샷 CRC 가 맞지 않음 path={}", path);
+                return Optional.empty();
+            }
+            //id 하나는 최소 2 바이트이므로 count 가 본문보다 크면 헤더가 잘못된 것이다
+            if (count < 0 || count > bodyLength / 2) {
+                log.warn("스냅샷 count 가 본문과 맞지 않음 path={} count={} bodyLength={}", path, count, bodyLength);
+                return Optional.empty();
+            }
+
+            List<String> memberIds = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int length = buffer.remaining() < 2 ? -1 : buffer.getShort() & 0xFFFF;
+                if (length < 0 || length > buffer.remaining()) {
+                    log.warn("스냅샷 본문이 count 보다 짧음 path={} count={} read={}", path, count, i);
+                    return Optional.empty();
+                }
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                memberIds.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            if (buffer.hasRemaining()) {
+                log.warn("스냅샷 본문이 count 보다 김 path={} count={} remaining={}", path, count, buffer.remaining());
+                return Optional.empty();
+            }
+            log.info("스냅샷 읽음 path={} count={} age={}", path, count, age);
+            return Optional.of(memberIds);
+        }
+    }
+
+    //header 의 CRC 앞까지와, body 의 현재 위치부터 끝까지를 계산한다. 두 버퍼의 위치는 바꾸지 않는다
+    private static long checksum(ByteBuffer header, ByteBuffer body) {
+        CRC32 crc = new CRC32();
+        crc.update(header.duplicate().position(0).limit(CRC_OFFSET));
+        crc.update(body.duplicate());
+        return crc.getValue();
+    }
+}
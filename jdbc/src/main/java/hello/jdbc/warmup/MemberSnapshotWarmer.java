@@ -0,0 +1,124 @@
+package hello.jdbc.warmup;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.CachingMemberRepository;
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 배포 직후 캐시와 H2 페이지가 비어 있어 느린 문제를 줄인다
+ *
+ * 시작할 때 스냅샷 파일의 memberId 를 기본 키로 다시 조회해서 (H2 페이지를 읽어 두고)
+ * 그 결과를 조회 캐시에 미리 넣는다
+ * ApplicationRunner 는 ApplicationReadyEvent 보다 먼저 실행되므로 준비 상태(ACCEPTING_TRAFFIC)는 워밍업 후에 알려진다
+ *
+ * 실행 중에는 interval 마다, 종료할 때 한 번 캐시에서 자주 쓰인 키를 스냅샷으로 저장한다
+ */
+@Slf4j
+public class MemberSnapshotWarmer implements ApplicationRunner, DisposableBean {
+
+    public static final int WARMUP_CHUNK_SIZE = 1000;
+
+    private final CachingMemberRepository cache;
+    private final MemberRepository target;
+    private final Path path;
+    private final Duration maxAge;
+    private final Duration interval;
+    private final int maxMembers;
+    private final Clock clock;
+    private final ScheduledExecutorService writer;
+
+    public MemberSnapshotWarmer(CachingMemberRepository cache, MemberRepository target, Path path,
+                                Duration maxAge, Duration interval, int maxMembers) {
+        this(cache, target, path, maxAge, interval, maxMembers, Clock.systemUTC());
+    }
+
+    public MemberSnapshotWarmer(CachingMemberRepository cache, MemberRepository target, Path path,
+                                Duration maxAge, Duration interval, int maxMembers, Clock clock) {
+        this.cache = cache;
+        this.target = target;
+        this.path = path;
+        this.maxAge = maxAge;
+        this.interval = interval;
+        this.maxMembers = maxMembers;
+        this.clock = clock;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "member-snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        warmUp();
+        long intervalMillis = interval.toMillis();
+        writer.scheduleWithFixedDelay(this::dump, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //캐시에 넣은 회원 수
+    public int warmUp() {
+        Optional<List<String>> snapshot;
+        try {
+            snapshot = MemberSnapshotFile.read(path, maxAge, clock);
+        } catch (IOException | RuntimeException e) {
+            //워밍업 실패로 시작을 막지 않는다
+            log.warn("스냅샷 읽기 실패 path={}", path, e);
+            return 0;
+        }
+        if (snapshot.isEmpty()) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        List<String> memberIds = snapshot.get();
+        int loaded = 0;
+        //잔액은 바뀌었을 수 있으므로 기본 키로 다시 읽는다. 이 조회로 H2 페이지도 메모리에 올라온다
+        try {
+            for (int from = 0; from < memberIds.size(); from += WARMUP_CHUNK_SIZE) {
+                List<String> chunk = memberIds.subList(from, Math.min(from + WARMUP_CHUNK_SIZE, memberIds.size()));
+                Map<String, Member> found = target.findByIds(chunk);
+                cache.preload(found.values());
+                loaded += found.size();
+            }
+        } catch (RuntimeException e) {
+            //DB 조회가 실패해도 시작을 막지 않는다. 그때까지 넣은 것만 남긴다
+            log.warn("워밍업 중단 path={} loaded={}", path, loaded, e);
+            return loaded;
+        }
+        log.info("워밍업 완료 snapshot={} loaded={} elapsed={}ms",
+            memberIds.size(), loaded, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return loaded;
+    }
+
+    public void dump() {
+        try {
+            List<String> memberIds = new ArrayList<>(cache.hottestMemberIds(maxMembers));
+            MemberSnapshotFile.write(path, memberIds, clock);
+            log.debug("스냅샷 저장 path={} count={}", path, memberIds.size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("스냅샷 저장 실패 path={}", path, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        writer.shutdownNow();
+        dump();
+    }
+}
@@ -0,0 +1,45 @@
+package hello.jdbc.warmup;
+
+import hello.jdbc.repository.CachingMemberRepository;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * member.snapshot.path 가 설정되었을 때만 조회 캐시와 워밍업을 등록한다
+ * 설정하지 않으면 기존처럼 MemberRepository 빈을 만들지 않는다
+ */
+@Configuration
+@ConditionalOnProperty("member.snapshot.path")
+public class WarmupConfig {
+
+    private final DataSource dataSource;
+
+    public WarmupConfig(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Bean
+    CachingMemberRepository memberRepository(@Value("${member.snapshot.cache-size:100000}") long cacheSize,
+                                             @Value("${member.snapshot.cache-ttl:10m}") Duration cacheTtl) {
+        return new CachingMemberRepository(new MemberRepositoryV5(dataSource), cacheSize, cacheTtl);
+    }
+
+    @Bean
+    MemberSnapshotWarmer memberSnapshotWarmer(CachingMemberRepository memberRepository,
+                                              @Value("${member.snapshot.path}") Path path,
+                                              @Value("${member.snapshot.max-age:1h}") Duration maxAge,
+                                              @Value("${member.snapshot.interval:5m}") Duration interval,
+                                              @Value("${member.snapshot.max-members:100000}") int maxMembers) {
+        //캐시를 거치지 않고 읽어야 H2 까지 요청이 간다
+        MemberRepository target = new MemberRepositoryV5(dataSource);
+        return new MemberSnapshotWarmer(memberRepository, target, path, maxAge, interval, maxMembers);
+    }
+}
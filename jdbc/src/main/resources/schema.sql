@@ -0,0 +1,12 @@
+-- member 테이블
+-- version: 낙관적 락 버전, money 를 변경할 때마다 1씩 증가한다
+-- spring.sql.init.mode=always 로 시작할 때마다 실행되므로 여러 번 실행해도 결과가 같아야 한다
+create table if not exists member (
+    member_id varchar(10),
+    money     integer default 0 not null,
+    version   bigint  default 0 not null,
+    primary key (member_id)
+);
+
+-- version 컬럼이 없던 기존 테이블
+alter table member add column if not exists version bigint default 0 not null;
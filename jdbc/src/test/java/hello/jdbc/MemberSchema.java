@@ -0,0 +1,19 @@
+package hello.jdbc;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+/**
+ * 스프링 컨테이너 없이 H2 서버를 쓰는 테스트용
+ * 애플리케이션과 같은 schema.sql 을 실행해서 member 테이블과 version 컬럼을 맞춘다
+ */
+public abstract class MemberSchema {
+
+    public static void migrate() {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"))
+            .execute(new DriverManagerDataSource(URL, USERNAME, PASSWORD));
+    }
+}
@@ -0,0 +1,90 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.PooledDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+/**
+ * 커넥션 획득 + select 1 + 반납 비용 비교 (H2 TCP 서버 필요)
+ * DriverManager 직접 연결, PooledDataSource, HikariDataSource (ConnectionTest.dataSourceConnection 설정)
+ */
+@Slf4j
+@Tag("benchmark")
+class ConnectionPoolBenchmarkTest {
+
+    static final int THREADS = 8;
+    static final int CALLS_PER_THREAD = 2_000;
+    static final int DRIVER_MANAGER_CALLS_PER_THREAD = 200;
+
+    @Test
+    void driverManagerVsPools() throws Exception {
+        HikariDataSource hikari = new HikariDataSource();
+        hikari.setJdbcUrl(URL);
+        hikari.setUsername(USERNAME);
+        hikari.setPassword(PASSWORD);
+        hikari.setMaximumPoolSize(10);
+        hikari.setPoolName("Mypool");
+        PooledDataSource pooled = new PooledDataSource(URL, USERNAME, PASSWORD, 10);
+
+        try {
+            //워밍업 후 측정
+            for (int round = 0; round < 2; round++) {
+                run("DriverManager", DRIVER_MANAGER_CALLS_PER_THREAD,
+                    () -> DriverManager.getConnection(URL, USERNAME, PASSWORD));
+                run("PooledDataSource", CALLS_PER_THREAD, pooled::getConnection);
+                run("HikariDataSource", CALLS_PER_THREAD, hikari::getConnection);
+            }
+        } finally {
+            pooled.close();
+            hikari.close();
+        }
+    }
+
+    private void run(String name, int calls, ConnectionSupplier supplier) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<LatencyRecorder>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                LatencyRecorder recorder = new LatencyRecorder(calls);
+                for (int n = 0; n < calls; n++) {
+                    long begin = System.nanoTime();
+                    try (Connection con = supplier.get();
+                         Statement stmt = con.createStatement();
+                         ResultSet rs = stmt.executeQuery("select 1")) {
+                        rs.next();
+                    }
+                    recorder.record(System.nanoTime() - begin);
+                }
+                return recorder;
+            }));
+        }
+        LatencyRecorder total = new LatencyRecorder(THREADS * calls);
+        for (Future<LatencyRecorder> future : futures) {
+            total.merge(future.get());
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        log.info("{} threads={} {}", name, THREADS, total.summary(elapsed));
+    }
+
+    interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+}
@@ -0,0 +1,126 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.diagnostics.Diagnostics;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import hello.jdbc.service.MemberServiceV4;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 리포지토리 INFO 로그를 Diagnostics 샘플링으로 바꾼 전후의 accountTransfer 처리량 비교 (내장 H2)
+ *
+ * 변경 전 로그는 코드에서 빠졌으므로 "info log (before)" 는 예전 V4_2 가 이체 한 번에 남기던 로그
+ * (getConnection 4번, resultSize 2번)를 같은 커넥션으로 그대로 남겨서 재현한다
+ */
+@Slf4j
+@Tag("benchmark")
+class DiagnosticsBenchmarkTest {
+
+    static final int THREADS = 8;
+    static final int ACCOUNTS_PER_THREAD = 100;
+    static final int TRANSFERS_PER_THREAD = 5_000;
+
+    HikariDataSource dataSource;
+    TransactionTemplate txTemplate;
+    MemberServiceV4 service;
+
+    @BeforeEach
+    void before() {
+        dataSource = EmbeddedMemberDb.create("diagnostics");
+        MemberRepository repository = new MemberRepositoryV4_2(dataSource);
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        service = new MemberServiceV4(repository);
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < THREADS * ACCOUNTS_PER_THREAD; i++) {
+            members.add(new Member(memberId(i), 1_000_000));
+        }
+        repository.saveAll(members);
+    }
+
+    @AfterEach
+    void after() {
+        Diagnostics.setSampleRate(0.01);
+        dataSource.close();
+    }
+
+    @Test
+    void infoLogVsSampledDiagnostics() throws Exception {
+        //워밍업 후 측정
+        for (int round = 0; round < 2; round++) {
+            Diagnostics.setSampleRate(0);
+            run("info log (before)", true);
+            run("diagnostics off", false);
+            Diagnostics.setSampleRate(0.01);
+            run("diagnostics 1%", false);
+            Diagnostics.setSampleRate(1);
+            run("diagnostics 100%", false);
+        }
+    }
+
+    //스레드마다 자기 계좌 범위 안에서만 이체해서 락 경합 없이 기록 비용 차이만 본다
+    private void run(String name, boolean legacyLog) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        LatencyRecorder total = new LatencyRecorder(THREADS * TRANSFERS_PER_THREAD);
+        List<Future<?>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            int base = t * ACCOUNTS_PER_THREAD;
+            futures.add(executor.submit(() -> {
+                LatencyRecorder recorder = new LatencyRecorder(TRANSFERS_PER_THREAD);
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    String from = memberId(base + i % ACCOUNTS_PER_THREAD);
+                    String to = memberId(base + (i + 1) % ACCOUNTS_PER_THREAD);
+                    long begin = System.nanoTime();
+                    txTemplate.executeWithoutResult(status -> {
+                        service.accountTransfer(from, to, 1);
+                        if (legacyLog) {
+                            logLikeBefore();
+                        }
+                    });
+                    recorder.record(System.nanoTime() - begin);
+                }
+                total.merge(recorder);
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        log.info("{} {}", name, total.summary(elapsed));
+    }
+
+    private void logLikeBefore() {
+        Connection con = DataSourceUtils.getConnection(dataSource);
+        for (int i = 0; i < 4; i++) {
+            log.info("get connection={}, class={}", con, con.getClass());
+        }
+        for (int i = 0; i < 2; i++) {
+            log.info("resultSize={}", 1);
+        }
+        DataSourceUtils.releaseConnection(con, dataSource);
+    }
+
+    private static String memberId(int i) {
+        return "m" + i;
+    }
+}
@@ -0,0 +1,32 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 성능 측정용 내장 H2
+ * 외부 H2 서버 없이 메모리 DB에 member 테이블을 만든다
+ */
+public abstract class EmbeddedMemberDb {
+
+    public static HikariDataSource create(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        dataSource.setMaximumPoolSize(10);
+        dataSource.setPoolName(name);
+
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("drop table member if exists");
+        template.execute("create table member (" +
+            "member_id varchar(32) primary key, " +
+            "money integer not null default 0, " +
+            "version bigint not null default 0)");
+        return dataSource;
+    }
+
+    public static void truncate(HikariDataSource dataSource) {
+        new JdbcTemplate(dataSource).execute("truncate table member");
+    }
+}
@@ -0,0 +1,66 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.repository.HotKeyDetector;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * HotKeyDetector.record 호출당 비용 (목표 50ns 이하)
+ * 키 100만 개 중 일부에 호출이 몰리는 분포로 여러 스레드에서 호출한다
+ */
+@Slf4j
+@Tag("benchmark")
+class HotKeyBenchmarkTest {
+
+    static final int KEYS = 1_000_000;
+    static final int RECORDS_PER_THREAD = 5_000_000;
+
+    @Test
+    void recordCost() throws Exception {
+        String[] keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "m" + i;
+        }
+
+        //워밍업 후 측정
+        for (int round = 0; round < 2; round++) {
+            for (int threads : new int[]{1, 4, 8}) {
+                run(threads, keys);
+            }
+        }
+    }
+
+    private void run(int threads, String[] keys) throws Exception {
+        HotKeyDetector detector = new HotKeyDetector(32, Duration.ofSeconds(10));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int n = 0; n < RECORDS_PER_THREAD; n++) {
+                    //호출의 절반은 상위 100 개 키에 몰린다
+                    int key = random.nextBoolean() ? random.nextInt(100) : random.nextInt(KEYS);
+                    detector.record(keys[key]);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        log.info("threads={} avg={}ns/record top={}",
+            threads, elapsed / RECORDS_PER_THREAD, detector.snapshot().subList(0, 3));
+    }
+}
@@ -0,0 +1,159 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.InMemoryMemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * InMemoryMemberRepository 와 ConcurrentHashMap<String, Member> 구현 비교
+ * 조회 80%, 갱신 10%, 이체 10% 를 여러 스레드에서 섞어서 실행한다
+ */
+@Slf4j
+@Tag("benchmark")
+class InMemoryRepositoryBenchmarkTest {
+
+    static final int THREADS = 8;
+    static final int MEMBERS = 100_000;
+    static final int OPS_PER_THREAD = 2_000_000;
+
+    @Test
+    void primitiveMapVsConcurrentHashMap() throws Exception {
+        InMemoryMemberRepository primitive = new InMemoryMemberRepository();
+        MapMembers map = new MapMembers();
+        for (int i = 0; i < MEMBERS; i++) {
+            primitive.save(new Member(memberId(i), 1_000_000));
+            map.save(new Member(memberId(i), 1_000_000));
+        }
+
+        //워밍업 후 측정
+        for (int round = 0; round < 2; round++) {
+            run("InMemoryMemberRepository", new Ops() {
+                public void read(String id) {
+                    primitive.findById(id);
+                }
+
+                public void write(String id, int money) {
+                    primitive.update(id, money);
+                }
+
+                public void transfer(String fromId, String toId) {
+                    primitive.transfer(fromId, toId, 1);
+                }
+            });
+            run("ConcurrentHashMap<String, Member>", new Ops() {
+                public void read(String id) {
+                    map.findById(id);
+                }
+
+                public void write(String id, int money) {
+                    map.update(id, money);
+                }
+
+                public void transfer(String fromId, String toId) {
+                    map.transfer(fromId, toId, 1);
+                }
+            });
+        }
+    }
+
+    private void run(String name, Ops ops) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int n = 0; n < OPS_PER_THREAD; n++) {
+                    String id = memberId(random.nextInt(MEMBERS));
+                    int op = random.nextInt(10);
+                    if (op < 8) {
+                        ops.read(id);
+                    } else if (op == 8) {
+                        ops.write(id, n);
+                    } else {
+                        String toId = memberId(random.nextInt(MEMBERS));
+                        if (!toId.equals(id)) {
+                            ops.transfer(id, toId);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        long total = (long) THREADS * OPS_PER_THREAD;
+        log.info("{} threads={} ops={} ops/sec={}", name, THREADS, total, (long) (total / (elapsed / 1e9)));
+    }
+
+    private static String memberId(int i) {
+        return "m" + i;
+    }
+
+    interface Ops {
+        void read(String id);
+
+        void write(String id, int money);
+
+        void transfer(String fromId, String toId);
+    }
+
+    /**
+     * 비교 대상: 값마다 Member 객체를 두고 객체 잠금으로 이체한다
+     */
+    static class MapMembers {
+
+        private final ConcurrentHashMap<String, Member> members = new ConcurrentHashMap<>();
+
+        void save(Member member) {
+            members.put(member.getMemberId(), member);
+        }
+
+        Member findById(String memberId) {
+            Member member = members.get(memberId);
+            synchronized (member) {
+                Member copy = new Member(member.getMemberId(), member.getMoney());
+                copy.setVersion(member.getVersion());
+                return copy;
+            }
+        }
+
+        void update(String memberId, int money) {
+            Member member = members.get(memberId);
+            synchronized (member) {
+                member.setMoney(money);
+                member.setVersion(member.getVersion() + 1);
+            }
+        }
+
+        boolean transfer(String fromId, String toId, int money) {
+            Member from = members.get(fromId);
+            Member to = members.get(toId);
+            Member first = fromId.compareTo(toId) < 0 ? from : to;
+            Member second = first == from ? to : from;
+            synchronized (first) {
+                synchronized (second) {
+                    if (from.getMoney() < money) {
+                        return false;
+                    }
+                    from.setMoney(from.getMoney() - money);
+                    to.setMoney(to.getMoney() + money);
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package hello.jdbc.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * 성능 측정용 지연시간 기록기
+ * 스레드마다 하나씩 만들어 쓰고, 끝나면 merge 해서 백분위를 구한다
+ */
+public class LatencyRecorder {
+
+    private long[] samples;
+    private int size;
+
+    public LatencyRecorder(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    public void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+    }
+
+    public synchronized void merge(LatencyRecorder other) {
+        for (int i = 0; i < other.size; i++) {
+            record(other.samples[i]);
+        }
+    }
+
+    public int count() {
+        return size;
+    }
+
+    //단위: 마이크로초
+    public long percentileMicros(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        return sorted[Math.max(0, index)] / 1000;
+    }
+
+    public String summary(long elapsedNanos) {
+        return String.format("ops=%d ops/sec=%d p50=%dus p99=%dus max=%dus",
+            size, (long) (size / (elapsedNanos / 1e9)),
+            percentileMicros(50), percentileMicros(99), percentileMicros(100));
+    }
+}
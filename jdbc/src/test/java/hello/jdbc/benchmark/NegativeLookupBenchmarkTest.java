@@ -0,0 +1,85 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.NegativeCachingMemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 없는 회원 조회 비용 비교
+ * 예외를 던지는 findById, 예외 없는 findOptionalById / exists, 없는 회원 캐시
+ */
+@Slf4j
+@Tag("benchmark")
+class NegativeLookupBenchmarkTest {
+
+    static final int LOOKUPS = 50_000;
+    static final int DISTINCT_MISSING = 1_000;
+
+    HikariDataSource dataSource;
+
+    @BeforeEach
+    void before() {
+        dataSource = EmbeddedMemberDb.create("negative");
+        new MemberRepositoryV5(dataSource).saveAll(List.of(new Member("exists", 0)));
+    }
+
+    @AfterEach
+    void after() {
+        dataSource.close();
+    }
+
+    @Test
+    void throwVsOptional() {
+        MemberRepository v42 = new MemberRepositoryV4_2(dataSource);
+        MemberRepository v5 = new MemberRepositoryV5(dataSource);
+        MemberRepository negative = new NegativeCachingMemberRepository(v5, 10_000, Duration.ofSeconds(5));
+
+        //워밍업 후 측정
+        for (int round = 0; round < 2; round++) {
+            run("V4_2 findById throw", id -> {
+                try {
+                    v42.findById(id);
+                } catch (NoSuchElementException e) {
+                    //miss
+                }
+            });
+            run("V5 findById throw", id -> {
+                try {
+                    v5.findById(id);
+                } catch (EmptyResultDataAccessException e) {
+                    //miss
+                }
+            });
+            run("V5 findOptionalById", v5::findOptionalById);
+            run("V5 exists", v5::exists);
+            run("negative cache findOptionalById", negative::findOptionalById);
+        }
+    }
+
+    private void run(String name, Lookup lookup) {
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookup.find("missing" + i % DISTINCT_MISSING);
+        }
+        long elapsed = System.nanoTime() - start;
+        log.info("{} lookups={} ops/sec={} avg={}ns",
+            name, LOOKUPS, (long) (LOOKUPS / (elapsed / 1e9)), elapsed / LOOKUPS);
+    }
+
+    interface Lookup {
+        void find(String memberId);
+    }
+}
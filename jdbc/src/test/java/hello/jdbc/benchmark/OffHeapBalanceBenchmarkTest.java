@@ -0,0 +1,95 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.OffHeapBalanceTable;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 1000만 건 잔액 캐시의 힙 사용량과 GC 시간 비교
+ * 힙 ConcurrentHashMap<String, Member> vs OffHeapBalanceTable
+ *
+ * 적재 후 조회/갱신을 반복하면서 GC 횟수와 누적 시간을 잰다
+ * 힙이 부족하면 ./gradlew benchmark -Dbenchmark.entries=... 로 건수를 줄인다
+ */
+@Slf4j
+@Tag("benchmark")
+class OffHeapBalanceBenchmarkTest {
+
+    static final int ENTRIES = Integer.getInteger("benchmark.entries", 10_000_000);
+    static final int ROUNDS = 3;
+
+    @Test
+    void onHeapMap() {
+        ConcurrentHashMap<String, Member> map = new ConcurrentHashMap<>(ENTRIES * 2);
+        run("on-heap ConcurrentHashMap", i -> map.put(id(i), new Member(id(i), i)), i -> {
+            Member member = map.get(id(i));
+            map.put(member.getMemberId(), new Member(member.getMemberId(), member.getMoney() + 1));
+        });
+        log.info("entries={}", map.size());
+    }
+
+    @Test
+    void offHeapTable() {
+        OffHeapBalanceTable table = new OffHeapBalanceTable(ENTRIES);
+        long[] value = new long[2];
+        run("off-heap table", i -> table.put(id(i), i, 0), i -> {
+            String memberId = id(i);
+            table.get(memberId, value);
+            table.put(memberId, (int) value[0] + 1, value[1] + 1);
+        });
+        log.info("entries={} offHeapBytes={}MB rejected={} evicted={}",
+            table.size(), table.offHeapBytes() >> 20, table.getRejected(), table.getEvicted());
+    }
+
+    private void run(String name, Consumer<Integer> load, Consumer<Integer> touch) {
+        long heapBefore = usedHeap();
+        long[] gcBefore = gc();
+        long start = System.nanoTime();
+        for (int i = 0; i < ENTRIES; i++) {
+            load.accept(i);
+        }
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+        long heapAfter = usedHeap();
+
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < ENTRIES; i++) {
+                touch.accept(i);
+            }
+        }
+        long touchMillis = (System.nanoTime() - start) / 1_000_000;
+        long[] gcAfter = gc();
+
+        log.info("{} entries={} retainedHeap={}MB load={}ms touch={}ms gcCount={} gcTime={}ms",
+            name, ENTRIES, (heapAfter - heapBefore) >> 20, loadMillis, touchMillis,
+            gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+    }
+
+    private static String id(int i) {
+        return "m" + i;
+    }
+
+    //GC 후 남은 힙 = 캐시가 붙잡고 있는 크기
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long[] gc() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return new long[]{count, time};
+    }
+}
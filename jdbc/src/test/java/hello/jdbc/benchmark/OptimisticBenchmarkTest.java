@@ -0,0 +1,113 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.LockingTransferService;
+import hello.jdbc.service.MemberServiceV4;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 낙관적 락 이체와 비관적 락 이체의 경합 정도별 비교
+ * 계좌 수가 적을수록 경합이 심하다. 경합이 낮으면 락 대기가 없는 낙관적 락이, 높으면 재시도가 쌓이는 대신 비관적 락이 유리하다
+ */
+@Slf4j
+@Tag("benchmark")
+class OptimisticBenchmarkTest {
+
+    static final int THREADS = 8;
+    static final int TRANSFERS_PER_THREAD = 2_000;
+
+    HikariDataSource dataSource;
+    MemberRepository repository;
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void before() {
+        dataSource = EmbeddedMemberDb.create("optimistic");
+        repository = new MemberRepositoryV5(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterEach
+    void after() {
+        dataSource.close();
+    }
+
+    @Test
+    void optimisticVsPessimistic() throws Exception {
+        MemberServiceV4 optimistic = new MemberServiceV4(repository, 20);
+        TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+        LockingTransferService pessimistic = new LockingTransferService(transactionManager, repository, 20, 1);
+
+        for (int accounts : new int[]{1000, 100, 10, 2}) {
+            run("optimistic", accounts, (from, to) -> txTemplate.executeWithoutResult(
+                status -> optimistic.accountTransferOptimistic(from, to, 1)));
+            run("pessimistic", accounts, (from, to) -> pessimistic.accountTransfer(from, to, 1));
+        }
+    }
+
+    private void run(String name, int accounts, Transfer transfer) throws Exception {
+        EmbeddedMemberDb.truncate(dataSource);
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            members.add(new Member("m" + i, 1_000_000));
+        }
+        repository.saveAll(members);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        LatencyRecorder total = new LatencyRecorder(THREADS * TRANSFERS_PER_THREAD);
+        LongAdder failures = new LongAdder();
+        List<Future<?>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                LatencyRecorder recorder = new LatencyRecorder(TRANSFERS_PER_THREAD);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(accounts);
+                    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                    long begin = System.nanoTime();
+                    try {
+                        transfer.run("m" + from, "m" + to);
+                    } catch (OptimisticLockingFailureException | PessimisticLockingFailureException e) {
+                        //재시도 한도를 넘긴 이체
+                        failures.increment();
+                    }
+                    recorder.record(System.nanoTime() - begin);
+                }
+                total.merge(recorder);
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        log.info("{} accounts={} failures={} {}", name, accounts, failures.sum(), total.summary(elapsed));
+    }
+
+    interface Transfer {
+        void run(String fromId, String toId);
+    }
+}
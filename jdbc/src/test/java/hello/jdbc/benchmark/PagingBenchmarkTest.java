@@ -0,0 +1,88 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberPage;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OFFSET 페이지 조회와 키셋 페이지 조회의 깊이별 응답 시간 비교 (100만 건)
+ */
+@Slf4j
+@Tag("benchmark")
+class PagingBenchmarkTest {
+
+    static final int ROWS = 1_000_000;
+    static final int PAGE_SIZE = 50;
+    static final int REPEAT = 20;
+
+    HikariDataSource dataSource;
+    MemberRepository repository;
+    JdbcTemplate template;
+
+    @BeforeEach
+    void before() {
+        dataSource = EmbeddedMemberDb.create("paging");
+        repository = new MemberRepositoryV5(dataSource);
+        template = new JdbcTemplate(dataSource);
+
+        List<Member> members = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            members.add(new Member(memberId(i), i));
+        }
+        repository.saveAll(members);
+    }
+
+    @AfterEach
+    void after() {
+        dataSource.close();
+    }
+
+    @Test
+    void offsetVsKeyset() {
+        for (int depth : new int[]{0, 10_000, 100_000, 500_000, 990_000}) {
+            long offsetNanos = measure(() -> template.query(
+                "select member_id, money from member order by member_id limit ? offset ?",
+                (rs, rowNum) -> rs.getString("member_id"), PAGE_SIZE, depth));
+
+            //키셋은 바로 앞 페이지의 마지막 키만 알면 된다
+            String after = depth == 0 ? null : memberId(depth - 1);
+            long keysetNanos = measure(() -> {
+                MemberPage page = repository.findPage(after, PAGE_SIZE);
+                return page.getMembers();
+            });
+
+            log.info("depth={} offset={}us keyset={}us", depth, offsetNanos / 1000, keysetNanos / 1000);
+        }
+    }
+
+    //워밍업 후 REPEAT 번 실행한 평균
+    private long measure(PageQuery query) {
+        for (int i = 0; i < REPEAT; i++) {
+            query.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < REPEAT; i++) {
+            query.run();
+        }
+        return (System.nanoTime() - start) / REPEAT;
+    }
+
+    private static String memberId(int i) {
+        return String.format("m%07d", i);
+    }
+
+    interface PageQuery {
+        List<?> run();
+    }
+}
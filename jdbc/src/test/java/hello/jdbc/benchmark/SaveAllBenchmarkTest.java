@@ -0,0 +1,67 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 단건 save 반복과 saveAll 배치 저장의 초당 처리 row 수 비교
+ */
+@Slf4j
+@Tag("benchmark")
+class SaveAllBenchmarkTest {
+
+    static final int ROWS = 100_000;
+
+    HikariDataSource dataSource;
+
+    @BeforeEach
+    void before() {
+        dataSource = EmbeddedMemberDb.create("saveAll");
+    }
+
+    @AfterEach
+    void after() {
+        dataSource.close();
+    }
+
+    @Test
+    void saveVsSaveAll() {
+        List<Member> members = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            members.add(new Member("m" + i, i));
+        }
+
+        run("V5 save", new MemberRepositoryV5(dataSource), members, false);
+        run("V5 saveAll(1000)", new MemberRepositoryV5(dataSource, 1000), members, true);
+        run("V4_2 save", new MemberRepositoryV4_2(dataSource), members, false);
+        run("V4_2 saveAll(1000)", new MemberRepositoryV4_2(dataSource, 1000), members, true);
+    }
+
+    private void run(String name, MemberRepository repository, List<Member> members, boolean batch) {
+        EmbeddedMemberDb.truncate(dataSource);
+
+        long start = System.nanoTime();
+        if (batch) {
+            repository.saveAll(members);
+        } else {
+            for (Member member : members) {
+                repository.save(member);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        log.info("{} rows={} elapsed={}ms rows/sec={}",
+            name, members.size(), elapsed / 1_000_000, (long) (members.size() / (elapsed / 1e9)));
+    }
+}
@@ -0,0 +1,108 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import hello.jdbc.service.TransferEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 기존 4문장 bizLogic 이체와 TransferEngine 단일 문장 이체의 처리량, p99 비교 (내장 H2)
+ */
+@Slf4j
+@Tag("benchmark")
+class TransferBenchmarkTest {
+
+    static final int THREADS = 8;
+    static final int ACCOUNTS_PER_THREAD = 100;
+    static final int TRANSFERS_PER_THREAD = 5_000;
+
+    HikariDataSource dataSource;
+    MemberRepository repository;
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void before() {
+        dataSource = EmbeddedMemberDb.create("transfer");
+        repository = new MemberRepositoryV5(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < THREADS * ACCOUNTS_PER_THREAD; i++) {
+            members.add(new Member(memberId(i), 1_000_000));
+        }
+        repository.saveAll(members);
+    }
+
+    @AfterEach
+    void after() {
+        dataSource.close();
+    }
+
+    @Test
+    void bizLogicVsTransferEngine() throws Exception {
+        //프록시 없이 쓰므로 @Transactional 대신 트랜잭션 템플릿으로 감싼다
+        MemberServiceV4 service = new MemberServiceV4(repository);
+        TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+        TransferEngine single = new TransferEngine(dataSource, transactionManager, TransferEngine.Mode.SINGLE_STATEMENT);
+        TransferEngine batch = new TransferEngine(dataSource, transactionManager, TransferEngine.Mode.BATCH);
+
+        run("bizLogic", (from, to) -> txTemplate.executeWithoutResult(
+            status -> service.accountTransfer(from, to, 1)));
+        run("engine single statement", (from, to) -> single.transfer(from, to, 1));
+        run("engine batch", (from, to) -> batch.transfer(from, to, 1));
+    }
+
+    //스레드마다 자기 계좌 범위 안에서만 이체해서 락 경합 없이 문장 수 차이만 본다
+    private void run(String name, Transfer transfer) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        LatencyRecorder total = new LatencyRecorder(THREADS * TRANSFERS_PER_THREAD);
+        List<Future<?>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            int base = t * ACCOUNTS_PER_THREAD;
+            futures.add(executor.submit(() -> {
+                LatencyRecorder recorder = new LatencyRecorder(TRANSFERS_PER_THREAD);
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    String from = memberId(base + i % ACCOUNTS_PER_THREAD);
+                    String to = memberId(base + (i + 1) % ACCOUNTS_PER_THREAD);
+                    long begin = System.nanoTime();
+                    transfer.run(from, to);
+                    recorder.record(System.nanoTime() - begin);
+                }
+                total.merge(recorder);
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        log.info("{} {}", name, total.summary(elapsed));
+    }
+
+    private static String memberId(int i) {
+        return "m" + i;
+    }
+
+    interface Transfer {
+        void run(String fromId, String toId);
+    }
+}
@@ -3,6 +3,7 @@ package hello.jdbc.connection;
 import org.junit.jupiter.api.Test;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -13,4 +14,19 @@ class DBConnectionUtilTest {
         Connection connection = DBConnectionUtil.getConnection();
         assertThat(connection).isNotNull();
     }
-}
\ No newline at end of file
+
+    @Test
+    void reuseConnection() throws SQLException {
+        //given
+        Connection con1 = DBConnectionUtil.getConnection();
+        Connection physical = con1.unwrap(Connection.class);
+        con1.close();
+
+        //when 반납 후 같은 스레드에서 다시 빌리면
+        Connection con2 = DBConnectionUtil.getConnection();
+
+        //then 새 TCP 커넥션을 열지 않고 같은 물리 커넥션을 쓴다
+        assertThat(con2.unwrap(Connection.class)).isSameAs(physical);
+        con2.close();
+    }
+}
@@ -0,0 +1,102 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.MemberSchema;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class InstrumentedDataSourceTest {
+
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"hikari", "driverManager"})
+    void recordTransaction(String type) {
+        //given
+        DataSource target = createDataSource(type);
+        DataSourceMetrics metrics = new DataSourceMetrics();
+        InstrumentedDataSource dataSource = new InstrumentedDataSource(target, metrics);
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        TransactionTemplate txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        try {
+            //when 커밋 한 번, 롤백 한 번
+            txTemplate.executeWithoutResult(status -> repository.save(new Member("metricA", 1000)));
+            assertThatThrownBy(() -> txTemplate.executeWithoutResult(status -> {
+                repository.update("metricA", 0);
+                throw new IllegalStateException("롤백");
+            })).isInstanceOf(IllegalStateException.class);
+            repository.delete("metricA");
+
+            //then
+            log.info("metrics\n{}", metrics.summary());
+            assertThat(metrics.getAcquire().getCount()).isEqualTo(3);
+            assertThat(metrics.getHold().getCount()).isEqualTo(3);
+            assertThat(metrics.getCommit().getCount()).isEqualTo(1);
+            assertThat(metrics.getRollback().getCount()).isEqualTo(1);
+            assertThat(metrics.getStatements())
+                .containsKeys("insert into member(member_id, money) values (?, ?)", "delete from member where member_id=?");
+            assertThat(metrics.statement("insert into member(member_id, money) values (?, ?)").getCount()).isEqualTo(1);
+        } finally {
+            if (target instanceof HikariDataSource) {
+                ((HikariDataSource) target).close();
+            }
+        }
+    }
+
+    @Test
+    void recordStatementBySql() throws Exception {
+        //given
+        DataSourceMetrics metrics = new DataSourceMetrics();
+        InstrumentedDataSource dataSource =
+            new InstrumentedDataSource(new DriverManagerDataSource(URL, USERNAME, PASSWORD), metrics);
+        String prepared = "select count(*) from member where member_id=?";
+        String direct = "select count(*) from member";
+
+        //when prepare 한 문장 객체로 다른 SQL 을 직접 실행한다 (H2 는 이 호출을 거부하지만 시간은 기록된다)
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement pstmt = con.prepareStatement(prepared)) {
+            pstmt.setString(1, "metricA");
+            pstmt.executeQuery().close();
+            assertThatThrownBy(() -> pstmt.executeQuery(direct)).isInstanceOf(SQLException.class);
+        }
+
+        //then 각자 실행한 SQL 의 히스토그램에 남는다
+        assertThat(metrics.statement(prepared).getCount()).isEqualTo(1);
+        assertThat(metrics.statement(direct).getCount()).isEqualTo(1);
+    }
+
+    private DataSource createDataSource(String type) {
+        if (type.equals("driverManager")) {
+            return new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        }
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(2);
+        return dataSource;
+    }
+}
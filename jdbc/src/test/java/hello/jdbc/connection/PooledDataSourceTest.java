@@ -0,0 +1,143 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.MemberSchema;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class PooledDataSourceTest {
+
+    PooledDataSource dataSource;
+
+    @AfterEach
+    void afterEach() {
+        dataSource.close();
+    }
+
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
+    @Test
+    void timeoutWhenExhausted() throws SQLException {
+        //given
+        dataSource = new PooledDataSource(URL, USERNAME, PASSWORD, 1, Duration.ofMillis(100), Duration.ZERO);
+        Connection held = dataSource.getConnection();
+
+        //then 최대 개수를 모두 빌려주었으면 대기 시간 후 예외
+        assertThatThrownBy(() -> dataSource.getConnection())
+            .isInstanceOf(SQLTransientConnectionException.class);
+        assertThat(dataSource.getTotalConnections()).isEqualTo(1);
+        held.close();
+    }
+
+    @Test
+    void handoffToWaiter() throws Exception {
+        //given
+        dataSource = new PooledDataSource(URL, USERNAME, PASSWORD, 1, Duration.ofSeconds(5), Duration.ZERO);
+        Connection held = dataSource.getConnection();
+        Connection physical = held.unwrap(Connection.class);
+
+        //when 다른 스레드가 기다리는 중에 반납한다
+        CompletableFuture<Connection> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        held.close();
+
+        //then 기다리던 스레드가 같은 커넥션을 받는다
+        Connection received = waiter.get(5, TimeUnit.SECONDS);
+        assertThat(received.unwrap(Connection.class)).isSameAs(physical);
+        received.close();
+    }
+
+    @Test
+    void rollbackOnReturn() throws SQLException {
+        //given
+        dataSource = new PooledDataSource(URL, USERNAME, PASSWORD, 1);
+        Connection con = dataSource.getConnection();
+        con.setAutoCommit(false);
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("insert into member(member_id, money) values ('poolA', 1000)");
+        }
+
+        //when 커밋하지 않고 반납
+        con.close();
+
+        //then 다음 사용자는 autoCommit 상태이고 변경은 롤백되었다
+        try (Connection next = dataSource.getConnection();
+             Statement stmt = next.createStatement();
+             ResultSet rs = stmt.executeQuery("select count(*) from member where member_id = 'poolA'")) {
+            assertThat(next.getAutoCommit()).isTrue();
+            rs.next();
+            assertThat(rs.getInt(1)).isZero();
+        }
+    }
+
+    @Test
+    void closedProxy() throws SQLException {
+        //given
+        dataSource = new PooledDataSource(URL, USERNAME, PASSWORD, 1);
+        Connection con = dataSource.getConnection();
+
+        //when
+        con.close();
+
+        //then 반납한 프록시는 더 이상 쓸 수 없다
+        assertThat(con.isClosed()).isTrue();
+        assertThatThrownBy(con::createStatement).isInstanceOf(SQLException.class);
+        assertThatThrownBy(() -> con.unwrap(Connection.class)).isInstanceOf(SQLException.class);
+        assertThat(dataSource.getIdleConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void closeStatementsOnReturn() throws SQLException {
+        //given 닫지 않은 Statement 와 ResultSet 을 남긴다
+        dataSource = new PooledDataSource(URL, USERNAME, PASSWORD, 1);
+        Connection con = dataSource.getConnection();
+        Statement stmt = con.createStatement();
+        ResultSet rs = stmt.executeQuery("select 1");
+
+        //when
+        con.close();
+
+        //then 반납할 때 함께 닫힌다
+        assertThat(stmt.isClosed()).isTrue();
+        assertThat(rs.isClosed()).isTrue();
+        assertThat(dataSource.getIdleConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void detectLeak() throws Exception {
+        //given
+        dataSource = new PooledDataSource(URL, USERNAME, PASSWORD, 1, Duration.ofSeconds(1), Duration.ofMillis(100));
+
+        //when 반납하지 않고 오래 들고 있는다
+        Connection con = dataSource.getConnection();
+        Thread.sleep(500);
+
+        //then
+        assertThat(dataSource.getLeaks()).isEqualTo(1);
+        con.close();
+    }
+}
@@ -0,0 +1,120 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.benchmark.EmbeddedMemberDb;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.TransferEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlowQueryLogTest {
+
+    HikariDataSource target;
+
+    @BeforeEach
+    void before() {
+        target = EmbeddedMemberDb.create("slowQuery");
+    }
+
+    @AfterEach
+    void after() {
+        target.close();
+    }
+
+    @Test
+    void parameterColumns() {
+        assertThat(SlowQueryLog.parameterColumns("insert into member(member_id, money) values(?, ?)"))
+            .containsExactly("member_id", "money");
+        assertThat(SlowQueryLog.parameterColumns("update member set money=money-? where member_id=? and money>=?"))
+            .containsExactly("money", "member_id", "money");
+        assertThat(SlowQueryLog.parameterColumns("select * from member where member_id in (?, ?)"))
+            .containsExactly("member_id", "member_id");
+        //알 수 없는 자리는 null
+        assertThat(SlowQueryLog.parameterColumns("select * from member where member_id > ? order by member_id limit ?"))
+            .containsExactly("member_id", null);
+    }
+
+    @Test
+    void captureJdbcTemplateAndPreparedStatement() throws InterruptedException {
+        //given 임계값 0 이면 모든 실행이 느린 쿼리다
+        SlowQueryLog slowQueryLog = new SlowQueryLog(Duration.ZERO, List.of("money"), 1000, target);
+        InstrumentedDataSource dataSource = new InstrumentedDataSource(target, new DataSourceMetrics(), slowQueryLog);
+        MemberRepository v5 = new MemberRepositoryV5(dataSource);
+        MemberRepository v4 = new MemberRepositoryV4_2(dataSource);
+
+        //when
+        v5.save(new Member("memberA", 10000));
+        v4.update("memberA", 20000);
+        slowQueryLog.close();
+
+        //then 금액은 마스킹하고 회원 id 는 남긴다. 실행 계획도 붙는다
+        List<SlowQuery> queries = slowQueryLog.recent();
+        assertThat(queries).extracting(SlowQuery::getCaller)
+            .anyMatch(caller -> caller.startsWith(MemberRepositoryV5.class.getName() + ".save"))
+            .anyMatch(caller -> caller.startsWith(MemberRepositoryV4_2.class.getName() + ".update"));
+        SlowQuery update = queries.stream()
+            .filter(query -> query.getSql().startsWith("update member set money=?"))
+            .findFirst().orElseThrow();
+        assertThat(update.getParameters()).containsExactly(SlowQueryLog.MASK, "memberA");
+        assertThat(update.getPlan()).containsIgnoringCase("member");
+    }
+
+    @Test
+    void maskUnknownPositions() throws InterruptedException {
+        //given TransferEngine 의 SQL 은 금액이 case 식과 money + ? 에 들어가서 컬럼을 알 수 없다
+        SlowQueryLog slowQueryLog = new SlowQueryLog(Duration.ZERO, List.of("money"), 1000, null);
+        InstrumentedDataSource dataSource = new InstrumentedDataSource(target, new DataSourceMetrics(), slowQueryLog);
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        repository.save(new Member("memberA", 10000));
+        repository.save(new Member("memberB", 10000));
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        //when
+        new TransferEngine(dataSource, transactionManager, TransferEngine.Mode.SINGLE_STATEMENT)
+            .transfer("memberA", "memberB", 1234);
+        new TransferEngine(dataSource, transactionManager, TransferEngine.Mode.BATCH)
+            .transfer("memberA", "memberB", 1234);
+        slowQueryLog.close();
+
+        //then 회원 id 만 보이고 금액은 어느 자리에도 남지 않는다
+        List<SlowQuery> transfers = slowQueryLog.recent().stream()
+            .filter(query -> query.getCaller().startsWith(TransferEngine.class.getName()))
+            .collect(Collectors.toList());
+        assertThat(transfers).hasSize(2);
+        assertThat(transfers.get(0).getParameters()).containsExactly(
+            "memberA", SlowQueryLog.MASK, SlowQueryLog.MASK, "memberA", "memberB", "memberA", SlowQueryLog.MASK);
+        assertThat(transfers.get(1).getParameters()).containsExactly(SlowQueryLog.MASK, "memberB", SlowQueryLog.MASK);
+        assertThat(transfers).flatExtracting(SlowQuery::getParameters).doesNotContain("1234", "-1234");
+    }
+
+    @Test
+    void rateLimit() throws InterruptedException {
+        //given 초당 2건
+        SlowQueryLog slowQueryLog = new SlowQueryLog(Duration.ZERO, List.of(), 2, null);
+        MemberRepository repository = new MemberRepositoryV5(
+            new InstrumentedDataSource(target, new DataSourceMetrics(), slowQueryLog));
+        repository.save(new Member("memberA", 10000));
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            repository.findById("memberA");
+        }
+        slowQueryLog.close();
+
+        //then 나머지는 건수만 센다
+        assertThat(slowQueryLog.getCaptured() + slowQueryLog.getSuppressed()).isEqualTo(11);
+        assertThat(slowQueryLog.getSuppressed()).isGreaterThanOrEqualTo(7);
+        assertThat(slowQueryLog.recent()).hasSize((int) slowQueryLog.getCaptured());
+    }
+}
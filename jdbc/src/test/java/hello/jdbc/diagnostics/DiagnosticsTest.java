@@ -0,0 +1,104 @@
+package hello.jdbc.diagnostics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.benchmark.EmbeddedMemberDb;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import hello.jdbc.service.MemberServiceV4;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiagnosticsTest {
+
+    HikariDataSource dataSource;
+    MemberServiceV4 service;
+    TransactionTemplate txTemplate;
+
+    @BeforeEach
+    void before() {
+        dataSource = EmbeddedMemberDb.create("diagnosticsTest");
+        MemberRepository repository = new MemberRepositoryV4_2(dataSource);
+        repository.save(new Member("memberA", 10000));
+        repository.save(new Member("memberB", 10000));
+        service = new MemberServiceV4(repository);
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterEach
+    void after() {
+        Diagnostics.setSampleRate(0.01);
+        dataSource.close();
+    }
+
+    @Test
+    void sampleRate() {
+        //given
+        Diagnostics.setSampleRate(0);
+
+        //when 샘플링을 끄면 기록하지 않는다
+        Diagnostics.updated("sampleOff", 1);
+        Diagnostics.setSampleRate(1);
+        Diagnostics.updated("sampleOn", 1);
+
+        //then
+        List<String> memberIds = Diagnostics.snapshot().stream()
+            .map(DiagnosticEvent::getMemberId)
+            .collect(Collectors.toList());
+        assertThat(memberIds).contains("sampleOn").doesNotContain("sampleOff");
+    }
+
+    @Test
+    void traceTransaction() {
+        //given 샘플링을 꺼도 추적을 요청한 트랜잭션은 모두 기록한다
+        Diagnostics.setSampleRate(0);
+        Diagnostics.traceNextTransactions(1);
+
+        //when
+        txTemplate.executeWithoutResult(status -> service.accountTransfer("memberA", "memberB", 2000));
+        long traceId = Diagnostics.lastTraceId();
+        txTemplate.executeWithoutResult(status -> service.accountTransfer("memberA", "memberB", 2000));
+
+        //then 첫 트랜잭션의 커넥션 획득, update 2번, 커밋이 한 추적으로 남는다
+        List<DiagnosticEvent> events = Diagnostics.trace(traceId);
+        assertThat(events).extracting(DiagnosticEvent::getType)
+            .contains(DiagnosticEvent.Type.CONNECTION_ACQUIRED)
+            .endsWith(DiagnosticEvent.Type.TRANSACTION_END);
+        assertThat(events).filteredOn(event -> event.getType() == DiagnosticEvent.Type.UPDATE)
+            .extracting(DiagnosticEvent::getMemberId)
+            .containsExactly("memberA", "memberB");
+        assertThat(events).filteredOn(event -> event.getType() == DiagnosticEvent.Type.CONNECTION_ACQUIRED)
+            .extracting(DiagnosticEvent::getConnectionId)
+            .containsOnly(events.get(0).getConnectionId());
+        assertThat(events.get(events.size() - 1).getValue()).isEqualTo(TransactionSynchronization.STATUS_COMMITTED);
+
+        //두 번째 트랜잭션은 추적하지 않는다
+        assertThat(Diagnostics.lastTraceId()).isEqualTo(traceId);
+    }
+
+    @Test
+    void ringBufferKeepsLatest() {
+        //given
+        Diagnostics.setSampleRate(1);
+
+        //when 버퍼보다 많이 기록
+        for (int i = 0; i < 10_000; i++) {
+            Diagnostics.updated("ring" + i, 1);
+        }
+
+        //then 오래된 이벤트는 덮어쓰고 최근 이벤트가 순서대로 남는다
+        List<DiagnosticEvent> events = Diagnostics.snapshot();
+        assertThat(events.size()).isLessThan(10_000);
+        assertThat(events.get(events.size() - 1).getMemberId()).isEqualTo("ring9999");
+        assertThat(events).extracting(DiagnosticEvent::getSequence).isSorted();
+    }
+}
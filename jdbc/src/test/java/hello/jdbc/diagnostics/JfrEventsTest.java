@@ -0,0 +1,106 @@
+package hello.jdbc.diagnostics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.benchmark.EmbeddedMemberDb;
+import hello.jdbc.connection.DataSourceMetrics;
+import hello.jdbc.connection.InstrumentedDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.MemberServiceV3_1;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JfrEventsTest {
+
+    static final int TRANSFERS = 10;
+
+    @TempDir
+    Path dir;
+
+    HikariDataSource target;
+    MemberRepositoryV3 memberRepository;
+    MemberServiceV3_1 memberService;
+
+    @BeforeEach
+    void before() throws Exception {
+        target = EmbeddedMemberDb.create("jfrEvents");
+        //SQL 실행과 트랜잭션 이벤트는 InstrumentedDataSource 가 남긴다
+        DataSource dataSource = new InstrumentedDataSource(target, new DataSourceMetrics());
+        memberRepository = new MemberRepositoryV3(dataSource);
+        memberService = new MemberServiceV3_1(new DataSourceTransactionManager(dataSource), memberRepository);
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.save(new Member("memberB", 10000));
+        memberRepository.save(new Member("ex", 10000));
+    }
+
+    @AfterEach
+    void after() {
+        target.close();
+    }
+
+    @Test
+    void recordTransfer() throws Exception {
+        //given
+        Path file = dir.resolve("transfer.jfr");
+
+        //when 이체하는 동안 JFR 기록
+        try (Recording recording = new Recording()) {
+            recording.enable(ConnectionAcquireEvent.class);
+            recording.enable(ConnectionReleaseEvent.class);
+            recording.enable(StatementEvent.class);
+            recording.enable(TransactionEvent.class);
+            recording.start();
+
+            for (int i = 0; i < TRANSFERS; i++) {
+                memberService.accountTransfer("memberA", "memberB", 100);
+            }
+            assertThatThrownBy(() -> memberService.accountTransfer("memberA", "ex", 100))
+                .isInstanceOf(IllegalStateException.class);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        //then
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+        List<RecordedEvent> transactions = ofType(events, "hello.jdbc.Transaction");
+        assertThat(transactions).extracting(event -> event.getString("outcome"))
+            .containsOnly(TransactionEvent.COMMIT, TransactionEvent.ROLLBACK)
+            .filteredOn(TransactionEvent.ROLLBACK::equals).hasSize(1);
+        assertThat(transactions).hasSize(TRANSFERS + 1);
+
+        //이체 한 번에 update 2번, 실패한 이체는 출금 update 1번
+        List<RecordedEvent> updates = ofType(events, "hello.jdbc.Statement").stream()
+            .filter(event -> event.getString("sql").startsWith("update member"))
+            .collect(Collectors.toList());
+        assertThat(updates).hasSize(TRANSFERS * 2 + 1);
+        assertThat(updates).extracting(event -> event.getLong("rowCount")).containsOnly(1L);
+
+        //트랜잭션 안의 리포지토리 호출은 모두 트랜잭션 커넥션을 다시 받는다
+        List<RecordedEvent> acquires = ofType(events, "hello.jdbc.ConnectionAcquire");
+        assertThat(acquires).isNotEmpty();
+        assertThat(acquires).extracting(event -> event.getBoolean("transactional")).containsOnly(true);
+        assertThat(ofType(events, "hello.jdbc.ConnectionRelease")).hasSameSizeAs(acquires);
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream()
+            .filter(event -> event.getEventType().getName().equals(name))
+            .collect(Collectors.toList());
+    }
+}
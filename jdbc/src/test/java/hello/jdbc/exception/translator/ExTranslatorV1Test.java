@@ -1,11 +1,13 @@
 package hello.jdbc.exception.translator;
 
+import hello.jdbc.MemberSchema;
 import hello.jdbc.connection.ConnectionConst;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.ex.MyDbException;
 import hello.jdbc.repository.ex.MyDuplicateKeyException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
@@ -22,6 +24,11 @@ public class ExTranslatorV1Test {
     Repository repository;
     Service service;
 
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
     @BeforeEach
     void init() {
         DriverManagerDataSource dataSource = new DriverManagerDataSource(ConnectionConst.URL, ConnectionConst.USERNAME, ConnectionConst.PASSWORD);
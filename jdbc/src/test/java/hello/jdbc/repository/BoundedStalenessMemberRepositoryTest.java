@@ -0,0 +1,119 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.MemberSchema;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class BoundedStalenessMemberRepositoryTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+
+    MemberRepositoryV5 target;
+    BoundedStalenessMemberRepository repository;
+
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        target = new MemberRepositoryV5(new DriverManagerDataSource(URL, USERNAME, PASSWORD));
+        //갱신 주기를 길게 잡아 백그라운드 갱신이 끼어들지 않게 한다
+        repository = new BoundedStalenessMemberRepository(target, Duration.ofMinutes(1), 1000);
+    }
+
+    @AfterEach
+    void afterEach() {
+        repository.close();
+        target.delete(MEMBER_A);
+        target.delete(MEMBER_B);
+    }
+
+    @Test
+    void serveFromSnapshot() {
+        //given
+        repository.save(new Member(MEMBER_A, 10000));
+        repository.findById(MEMBER_A, Duration.ofMinutes(1));
+
+        //when 데코레이터를 거치지 않은 변경은 허용 시간 안에서는 보이지 않을 수 있다
+        target.update(MEMBER_A, 8000);
+        Member stale = repository.findById(MEMBER_A, Duration.ofMinutes(1));
+        Member fresh = repository.findById(MEMBER_A, Duration.ZERO);
+
+        //then
+        log.info("stats={}", repository.stats());
+        assertThat(stale.getMoney()).isEqualTo(10000);
+        assertThat(fresh.getMoney()).isEqualTo(8000);
+        assertThat(repository.stats().getServed()).isEqualTo(1);
+        assertThat(repository.stats().getLoads()).isEqualTo(2);
+    }
+
+    @Test
+    void backgroundRefresh() throws InterruptedException {
+        //given
+        repository.close();
+        repository = new BoundedStalenessMemberRepository(target, Duration.ofMillis(100), 1000);
+        repository.save(new Member(MEMBER_A, 10000));
+        repository.findById(MEMBER_A, Duration.ofMinutes(1));
+
+        //when 갱신 주기가 지나면 스냅샷이 새 값으로 바뀐다
+        target.update(MEMBER_A, 8000);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (repository.findById(MEMBER_A, Duration.ofMinutes(1)).getMoney() != 8000
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        //then 조회는 계속 스냅샷에서 처리되었다
+        assertThat(repository.findById(MEMBER_A, Duration.ofMinutes(1)).getMoney()).isEqualTo(8000);
+        assertThat(repository.stats().getLoads()).isEqualTo(1);
+        assertThat(repository.stats().getRefreshes()).isPositive();
+    }
+
+    @Test
+    void evictOnWrite() {
+        //given
+        repository.save(new Member(MEMBER_A, 10000));
+        repository.findById(MEMBER_A, Duration.ofMinutes(1));
+
+        //when
+        repository.update(MEMBER_A, 8000);
+
+        //then 이 데코레이터로 변경하면 바로 보인다
+        assertThat(repository.findById(MEMBER_A, Duration.ofMinutes(1)).getMoney()).isEqualTo(8000);
+    }
+
+    @Test
+    void dropIdleSnapshot() throws InterruptedException {
+        //given 스냅샷 한 개만 둘 수 있고 memberA 가 자리를 차지하고 있다
+        repository.close();
+        repository = new BoundedStalenessMemberRepository(target, Duration.ofMillis(50), 1, Duration.ofMillis(200));
+        repository.save(new Member(MEMBER_A, 10000));
+        repository.save(new Member(MEMBER_B, 20000));
+        repository.findById(MEMBER_A, Duration.ofMinutes(1));
+
+        //when memberA 를 더 읽지 않으면 지워지고 memberB 가 들어온다
+        long deadline = System.currentTimeMillis() + 5000;
+        while (repository.stats().getServed() == 0 && System.currentTimeMillis() < deadline) {
+            repository.findById(MEMBER_B, Duration.ofMinutes(1));
+            Thread.sleep(20);
+        }
+
+        //then
+        assertThat(repository.stats().getIdleEvictions()).isPositive();
+        assertThat(repository.stats().getServed()).isPositive();
+    }
+}
@@ -0,0 +1,91 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.MemberSchema;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class CachingMemberRepositoryTest {
+
+    public static final String MEMBER_A = "memberA";
+
+    CachingMemberRepository repository;
+    TransactionTemplate txTemplate;
+
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        repository = new CachingMemberRepository(new MemberRepositoryV5(dataSource), 1000, Duration.ofMinutes(1));
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterEach
+    void afterEach() {
+        repository.delete(MEMBER_A);
+    }
+
+    @Test
+    void cacheHit() {
+        //given
+        repository.save(new Member(MEMBER_A, 10000));
+
+        //when
+        repository.findById(MEMBER_A);
+        repository.findById(MEMBER_A);
+
+        //then
+        log.info("stats={}", repository.stats());
+        assertThat(repository.stats().missCount()).isEqualTo(1);
+        assertThat(repository.stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void evictAfterCommit() {
+        //given
+        repository.save(new Member(MEMBER_A, 10000));
+        repository.findById(MEMBER_A);
+
+        //when
+        txTemplate.executeWithoutResult(status -> repository.update(MEMBER_A, 8000));
+
+        //then 커밋 후에는 새 값을 읽는다
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+    }
+
+    @Test
+    void keepOnRollback() {
+        //given
+        repository.save(new Member(MEMBER_A, 10000));
+        repository.findById(MEMBER_A);
+
+        //when accountTransferEx 처럼 변경 후 예외로 롤백
+        assertThatThrownBy(() -> txTemplate.executeWithoutResult(status -> {
+            repository.update(MEMBER_A, 8000);
+            //트랜잭션 안에서는 자기 변경을 본다
+            assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+            throw new IllegalStateException("이체중 예외 발생");
+        })).isInstanceOf(IllegalStateException.class);
+
+        //then 캐시와 DB 모두 롤백 전 값이다
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(repository.stats().hitCount()).isEqualTo(1);
+    }
+}
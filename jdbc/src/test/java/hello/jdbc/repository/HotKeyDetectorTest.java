@@ -0,0 +1,93 @@
+package hello.jdbc.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotKeyDetectorTest {
+
+    @Test
+    void findHotKeys() {
+        //given
+        HotKeyDetector detector = new HotKeyDetector(3, Duration.ofMinutes(1));
+
+        //when 세 개의 키에 호출이 몰리고 나머지는 한 번씩 호출된다
+        for (int i = 0; i < 10_000; i++) {
+            detector.record("cold" + i);
+            if (i % 2 == 0) {
+                detector.record("hotA");
+            }
+            if (i % 5 == 0) {
+                detector.record("hotB");
+            }
+            if (i % 10 == 0) {
+                detector.record("hotC");
+            }
+        }
+
+        //then
+        List<HotKey> snapshot = detector.snapshot();
+        assertThat(snapshot).extracting("memberId").containsExactly("hotA", "hotB", "hotC");
+        //추정값은 실제보다 작지 않다
+        assertThat(snapshot.get(0).getCount()).isGreaterThanOrEqualTo(5_000);
+        assertThat(detector.estimate("hotB")).isGreaterThanOrEqualTo(2_000);
+    }
+
+    @Test
+    void expireAfterWindow() throws InterruptedException {
+        //given
+        HotKeyDetector detector = new HotKeyDetector(3, Duration.ofMillis(200));
+        for (int i = 0; i < 100; i++) {
+            detector.record("hotA");
+        }
+
+        //when 윈도우가 지나면 예전 호출은 빠진다
+        Thread.sleep(400);
+        detector.record("hotB");
+
+        //then
+        assertThat(detector.estimate("hotA")).isZero();
+        assertThat(detector.snapshot()).extracting("memberId").containsExactly("hotB");
+    }
+
+    @Test
+    void expireWhileIdle() throws InterruptedException {
+        //given
+        HotKeyDetector detector = new HotKeyDetector(3, Duration.ofMillis(200));
+        for (int i = 0; i < 100; i++) {
+            detector.record("hotA");
+        }
+
+        //when 호출 없이 윈도우가 지난다
+        Thread.sleep(400);
+
+        //then record 가 없어도 조회할 때 예전 호출은 빠진다
+        assertThat(detector.snapshot()).isEmpty();
+        assertThat(detector.estimate("hotA")).isZero();
+    }
+
+    @Test
+    void challengerMustBeatRefreshedMinimum() {
+        //given 들어간 뒤에 호출이 늘어서 힙에 남은 값이 실제보다 작다
+        HotKeyDetector detector = new HotKeyDetector(2, Duration.ofMinutes(1));
+        detector.record("hotA");
+        detector.record("hotB");
+        for (int i = 0; i < 100; i++) {
+            detector.record("hotA");
+        }
+        for (int i = 0; i < 50; i++) {
+            detector.record("hotB");
+        }
+
+        //when 최솟값(51)과 비슷한 정도로는 밀어내지 못한다
+        for (int i = 0; i < 55; i++) {
+            detector.record("hotC");
+        }
+
+        //then
+        assertThat(detector.snapshot()).extracting("memberId").containsExactly("hotA", "hotB");
+    }
+}
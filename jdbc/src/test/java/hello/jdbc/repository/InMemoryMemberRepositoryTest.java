@@ -0,0 +1,109 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryMemberRepositoryTest extends MemberRepositoryContractTest {
+
+    @Override
+    MemberRepository createRepository() {
+        //세그먼트 경계를 확인하기 위해 작게 잡는다
+        return new InMemoryMemberRepository(2);
+    }
+
+    @Test
+    void transfer() {
+        //given
+        InMemoryMemberRepository memory = (InMemoryMemberRepository) repository;
+        memory.save(new Member("batchA", 10000));
+        memory.save(new Member("batchB", 10000));
+
+        //when
+        boolean transferred = memory.transfer("batchA", "batchB", 2000);
+        boolean insufficient = memory.transfer("batchA", "batchB", 9000);
+
+        //then 잔액이 부족하면 양쪽 모두 그대로다
+        assertThat(transferred).isTrue();
+        assertThat(insufficient).isFalse();
+        assertThat(memory.findById("batchA").getMoney()).isEqualTo(8000);
+        assertThat(memory.findById("batchB").getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    void transferNonPositive() {
+        //given
+        InMemoryMemberRepository memory = (InMemoryMemberRepository) repository;
+        memory.save(new Member("batchA", 10000));
+        memory.save(new Member("batchB", 0));
+
+        //when 음수 이체는 잔액 검사 없이 batchB 에서 batchA 로 옮기게 되므로 거부한다
+        assertThatThrownBy(() -> memory.transfer("batchA", "batchB", -500))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> memory.transfer("batchA", "batchB", 0))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        //then
+        assertThat(memory.findById("batchA").getMoney()).isEqualTo(10000);
+        assertThat(memory.findById("batchB").getMoney()).isEqualTo(0);
+    }
+
+    @Test
+    void concurrentTransferBothDirections() throws Exception {
+        //given
+        InMemoryMemberRepository memory = (InMemoryMemberRepository) repository;
+        memory.save(new Member("batchA", 100000));
+        memory.save(new Member("batchB", 100000));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //when 반대 방향 이체를 동시에 실행해도 교착 없이 끝난다
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            boolean forward = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                for (int n = 0; n < 10000; n++) {
+                    if (forward) {
+                        memory.transfer("batchA", "batchB", 1);
+                    } else {
+                        memory.transfer("batchB", "batchA", 1);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        //then 같은 횟수만큼 오갔으므로 잔액과 합계가 그대로다
+        assertThat(memory.findById("batchA").getMoney()).isEqualTo(100000);
+        assertThat(memory.findById("batchB").getMoney()).isEqualTo(100000);
+        assertThat(memory.findById("batchA").getVersion()).isEqualTo(80000);
+    }
+
+    @Test
+    void growAndReuseDeletedSlots() {
+        //given
+        for (int i = 0; i < 1000; i++) {
+            repository.save(new Member("m" + i, i));
+        }
+
+        //when
+        for (int i = 0; i < 1000; i += 2) {
+            repository.delete("m" + i);
+        }
+
+        //then
+        assertThat(((InMemoryMemberRepository) repository).size()).isEqualTo(500);
+        assertThat(repository.exists("m0")).isFalse();
+        assertThat(repository.findById("m999").getMoney()).isEqualTo(999);
+    }
+}
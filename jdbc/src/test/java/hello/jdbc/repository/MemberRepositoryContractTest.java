@@ -0,0 +1,184 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * MemberRepository 구현이 공통으로 지켜야 하는 계약
+ * 구현마다 상속해서 createRepository 만 구현한다
+ */
+abstract class MemberRepositoryContractTest {
+
+    MemberRepository repository;
+
+    abstract MemberRepository createRepository();
+
+    @BeforeEach
+    void setUpRepository() {
+        repository = createRepository();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        repository.delete("batchA");
+        repository.delete("batchB");
+        repository.delete("batchC");
+    }
+
+    @Test
+    void saveAll() {
+        //given
+        List<Member> members = List.of(
+            new Member("batchA", 1000),
+            new Member("batchB", 2000),
+            new Member("batchC", 3000));
+
+        //when
+        repository.saveAll(members);
+
+        //then
+        assertThat(repository.findById("batchA").getMoney()).isEqualTo(1000);
+        assertThat(repository.findById("batchB").getMoney()).isEqualTo(2000);
+        assertThat(repository.findById("batchC").getMoney()).isEqualTo(3000);
+    }
+
+    @Test
+    void saveAllDuplicateKey() {
+        //given
+        repository.save(new Member("batchC", 0));
+
+        //when
+        List<Member> members = List.of(
+            new Member("batchA", 1000),
+            new Member("batchB", 2000),
+            new Member("batchC", 3000));
+
+        //then 실패한 row의 memberId가 메시지에 담긴다
+        assertThatThrownBy(() -> repository.saveAll(members))
+            .isInstanceOf(DuplicateKeyException.class)
+            .hasMessageContaining("batchC");
+    }
+
+    @Test
+    void findByIdNotFound() {
+        assertThatThrownBy(() -> repository.findById("batchX"))
+            .isInstanceOf(EmptyResultDataAccessException.class);
+    }
+
+    @Test
+    void findByIds() {
+        //given
+        repository.save(new Member("batchA", 1000));
+        repository.save(new Member("batchB", 2000));
+
+        //when 없는 키가 섞여 있어도 예외 없이 존재하는 회원만 반환한다
+        Map<String, Member> found = repository.findByIds(List.of("batchA", "batchB", "batchX"));
+
+        //then
+        assertThat(found).containsOnlyKeys("batchA", "batchB");
+        assertThat(found.get("batchB").getMoney()).isEqualTo(2000);
+    }
+
+    @Test
+    void findPage() {
+        //given
+        repository.saveAll(List.of(
+            new Member("batchA", 1000),
+            new Member("batchB", 2000),
+            new Member("batchC", 3000)));
+
+        //when 마지막 키 다음부터 이어서 조회한다
+        MemberPage first = repository.findPage("batch", 2);
+        MemberPage second = repository.findPage(PageToken.decode(first.getNext().encode()).getAfterMemberId(), 2);
+
+        //then
+        assertThat(first.getMembers()).extracting("memberId").containsExactly("batchA", "batchB");
+        assertThat(second.getMembers()).extracting("memberId").startsWith("batchC");
+    }
+
+    @Test
+    void compareAndSetUpdate() {
+        //given
+        repository.save(new Member("batchA", 1000));
+        Member member = repository.findById("batchA");
+
+        //when 다른 곳에서 먼저 변경하면 버전이 올라간다
+        repository.addMoney("batchA", 500);
+        int conflict = repository.update("batchA", member.getVersion(), 0);
+        Member latest = repository.findById("batchA");
+        int updated = repository.update("batchA", latest.getVersion(), 0);
+
+        //then 충돌은 예외 없이 0 으로 알려준다
+        assertThat(conflict).isEqualTo(0);
+        assertThat(updated).isEqualTo(1);
+        assertThat(repository.findById("batchA").getVersion()).isEqualTo(latest.getVersion() + 1);
+    }
+
+    @Test
+    void withdrawAndAddMoney() {
+        //given
+        repository.save(new Member("batchA", 1000));
+
+        //when 잔액이 부족한 출금은 반영되지 않는다
+        int insufficient = repository.withdraw("batchA", 2000);
+        int withdrawn = repository.withdraw("batchA", 400);
+        int added = repository.addMoney("batchA", 100);
+        int missing = repository.addMoney("batchX", 100);
+
+        //then
+        assertThat(insufficient).isEqualTo(0);
+        assertThat(withdrawn).isEqualTo(1);
+        assertThat(added).isEqualTo(1);
+        assertThat(missing).isEqualTo(0);
+        assertThat(repository.findById("batchA").getMoney()).isEqualTo(700);
+    }
+
+    @Test
+    void withdrawNonPositive() {
+        //given
+        repository.save(new Member("batchA", 1000));
+
+        //then 0 이하 출금은 잔액 검사를 우회하므로 거부한다
+        assertThatThrownBy(() -> repository.withdraw("batchA", -500))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> repository.withdraw("batchA", 0))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(repository.findById("batchA").getMoney()).isEqualTo(1000);
+    }
+
+    @Test
+    void findOptionalById() {
+        //given
+        repository.save(new Member("batchA", 1000));
+
+        //then 없는 회원은 예외 없이 빈 Optional
+        assertThat(repository.findOptionalById("batchA")).isPresent();
+        assertThat(repository.findOptionalById("batchX")).isEmpty();
+        assertThat(repository.exists("batchA")).isTrue();
+        assertThat(repository.exists("batchX")).isFalse();
+    }
+
+    @Test
+    void delete() {
+        //given
+        repository.save(new Member("batchA", 1000));
+
+        //when
+        repository.delete("batchA");
+
+        //then 지운 뒤 같은 키로 다시 저장할 수 있다
+        assertThat(repository.exists("batchA")).isFalse();
+        repository.save(new Member("batchA", 500));
+        assertThat(repository.findById("batchA").getMoney()).isEqualTo(500);
+    }
+}
@@ -1,7 +1,9 @@
 package hello.jdbc.repository;
 
+import hello.jdbc.MemberSchema;
 import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.sql.SQLException;
@@ -17,6 +19,11 @@ class MemberRepositoryV0Test {
 
     MemberRepositoryV0 repository = new MemberRepositoryV0();
 
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
     @Test
     void crud() throws SQLException {
         //save
@@ -1,8 +1,10 @@
 package hello.jdbc.repository;
 
 import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.MemberSchema;
 import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
@@ -21,6 +23,11 @@ class MemberRepositoryV1Test {
 
     MemberRepositoryV1 repository;
 
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
     @BeforeEach
     void beforeEach() {
         //기본 Driver Manager - 항상 새로운 커넥션 획득
@@ -0,0 +1,116 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.MemberSchema;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class MemberRepositoryV5Test extends MemberRepositoryContractTest {
+
+    DataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
+    @Override
+    MemberRepository createRepository() {
+        //청크 경계를 확인하기 위해 배치 크기를 작게 잡는다
+        return new MemberRepositoryV5(dataSource, 2);
+    }
+
+    @Test
+    void forEachInTransaction() {
+        //given
+        TransactionTemplate txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        //when 트랜잭션 안에서 저장한 (아직 커밋되지 않은) 회원도 커서에서 보인다
+        List<String> scanned = txTemplate.execute(status -> {
+            repository.save(new Member("batchA", 1000));
+            List<String> ids = new ArrayList<>();
+            repository.forEach(1, true, member -> ids.add(member.getMemberId()));
+            status.setRollbackOnly();
+            return ids;
+        });
+
+        //then 같은 커넥션을 썼으므로 보이고, 롤백 후에는 사라진다
+        assertThat(scanned).contains("batchA");
+        assertThat(repository.findByIds(List.of("batchA"))).isEmpty();
+    }
+
+    @Test
+    void identityMapInTransaction() {
+        //given
+        repository.save(new Member("batchA", 1000));
+        TransactionTemplate txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        //when
+        txTemplate.executeWithoutResult(status -> {
+            Member first = repository.findById("batchA");
+            repository.update("batchA", 2000);
+            Member second = repository.findById("batchA");
+
+            //then 같은 트랜잭션의 변경이 맵에 반영된다
+            assertThat(second.getMoney()).isEqualTo(2000);
+            assertThat(second.getVersion()).isEqualTo(first.getVersion() + 1);
+        });
+
+        //then 트랜잭션이 끝나면 맵도 해제된다
+        assertThat(TransactionSynchronizationManager.getResourceMap()).isEmpty();
+        assertThat(repository.findById("batchA").getMoney()).isEqualTo(2000);
+    }
+
+    @Test
+    void findByIdsInParallelChunks() {
+        //given IN 절 크기(100)를 넘겨 청크가 세 개가 되도록 저장한다
+        List<Member> members = new ArrayList<>();
+        List<String> memberIds = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            members.add(new Member("chunk" + i, i));
+            memberIds.add("chunk" + i);
+        }
+        AtomicInteger tasks = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        MemberRepositoryV5 parallel = new MemberRepositoryV5(dataSource, 1000, task -> {
+            tasks.incrementAndGet();
+            executor.execute(task);
+        });
+        TransactionTemplate txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        parallel.saveAll(members);
+
+        try {
+            //when 트랜잭션 밖에서는 청크마다 넘긴 Executor 로 조회하고, 안에서는 순서대로 조회한다
+            Map<String, Member> found = parallel.findByIds(memberIds);
+            int parallelTasks = tasks.get();
+            Map<String, Member> foundInTx = txTemplate.execute(status -> parallel.findByIds(memberIds));
+
+            //then
+            assertThat(found).hasSize(250);
+            assertThat(found.get("chunk249").getMoney()).isEqualTo(249);
+            assertThat(parallelTasks).isEqualTo(3);
+            assertThat(foundInTx).hasSize(250);
+            assertThat(tasks.get()).isEqualTo(3);
+        } finally {
+            executor.shutdown();
+            memberIds.forEach(parallel::delete);
+        }
+    }
+}
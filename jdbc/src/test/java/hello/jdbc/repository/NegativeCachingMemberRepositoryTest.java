@@ -0,0 +1,72 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.MemberSchema;
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+import java.util.NoSuchElementException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NegativeCachingMemberRepositoryTest extends MemberRepositoryContractTest {
+
+    @Override
+    MemberRepository createRepository() {
+        return new NegativeCachingMemberRepository(new InMemoryMemberRepository(2), 1000, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void findByIdMissIsCached() {
+        //given
+        NegativeCachingMemberRepository negative = (NegativeCachingMemberRepository) repository;
+        assertThatThrownBy(() -> negative.findById("batchX"))
+            .isInstanceOf(EmptyResultDataAccessException.class);
+
+        //when 두 번째 조회는 캐시에서 응답한다
+        assertThatThrownBy(() -> negative.findById("batchX"))
+            .isInstanceOf(EmptyResultDataAccessException.class);
+
+        //then findById 로 확인한 없음을 다른 조회도 같이 쓴다
+        assertThat(negative.exists("batchX")).isFalse();
+        assertThat(negative.getNegativeHits()).isEqualTo(2);
+    }
+
+    @Test
+    void saveForgetsMiss() {
+        //given
+        NegativeCachingMemberRepository negative = (NegativeCachingMemberRepository) repository;
+        assertThat(negative.findOptionalById("batchA")).isEmpty();
+
+        //when
+        negative.save(new Member("batchA", 1000));
+
+        //then 저장 직후에는 캐시된 없음이 남아 있지 않다
+        assertThat(negative.findById("batchA").getMoney()).isEqualTo(1000);
+        assertThat(negative.getNegativeHits()).isEqualTo(0);
+    }
+
+    @Test
+    void findByIdMissOverV4KeepsTargetException() {
+        //given V4 저장소는 없는 회원을 NoSuchElementException 으로 알린다
+        MemberSchema.migrate();
+        MemberRepository target = new MemberRepositoryV4_2(new DriverManagerDataSource(URL, USERNAME, PASSWORD));
+        NegativeCachingMemberRepository negative = new NegativeCachingMemberRepository(target, 1000, Duration.ofMinutes(1),
+            memberId -> new NoSuchElementException("member not found memberId=" + memberId));
+
+        //when 처음 조회는 DB, 두 번째 조회는 캐시에서 응답한다
+        assertThatThrownBy(() -> negative.findById("negativeX"))
+            .isInstanceOf(NoSuchElementException.class);
+        assertThatThrownBy(() -> negative.findById("negativeX"))
+            .isInstanceOf(NoSuchElementException.class);
+
+        //then 캐시된 없음도 대상 저장소와 같은 예외로 응답한다
+        assertThat(negative.getNegativeHits()).isEqualTo(1);
+        assertThatThrownBy(() -> target.findById("negativeX"))
+            .isInstanceOf(NoSuchElementException.class);
+    }
+}
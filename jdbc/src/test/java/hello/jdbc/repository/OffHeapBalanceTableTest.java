@@ -0,0 +1,173 @@
+package hello.jdbc.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapBalanceTableTest {
+
+    @Test
+    void putAndGet() {
+        //given
+        OffHeapBalanceTable table = new OffHeapBalanceTable(100);
+        long[] value = new long[2];
+
+        //when
+        table.put("memberA", 10000, 3);
+
+        //then
+        assertThat(table.get("memberA", value)).isTrue();
+        assertThat(value).containsExactly(10000, 3);
+        assertThat(table.get("memberB", value)).isFalse();
+    }
+
+    @Test
+    void overwrite() {
+        //given
+        OffHeapBalanceTable table = new OffHeapBalanceTable(100);
+        table.put("memberA", 10000, 0);
+        long[] value = new long[2];
+
+        //when
+        table.put("memberA", 8000, 1);
+
+        //then
+        assertThat(table.get("memberA", value)).isTrue();
+        assertThat(value).containsExactly(8000, 1);
+        assertThat(table.size()).isEqualTo(1);
+    }
+
+    @Test
+    void removeAndReinsert() {
+        //given 삭제 표시가 쌓여 다시 배치될 만큼 넣고 지운다
+        OffHeapBalanceTable table = new OffHeapBalanceTable(1000);
+        for (int i = 0; i < 1000; i++) {
+            table.put("m" + i, i, 0);
+        }
+
+        //when
+        for (int i = 0; i < 1000; i += 2) {
+            table.remove("m" + i);
+        }
+
+        //then
+        long[] value = new long[2];
+        assertThat(table.size()).isEqualTo(500);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(table.get("m" + i, value)).isEqualTo(i % 2 == 1);
+        }
+        table.put("m0", 7, 0);
+        assertThat(table.get("m0", value)).isTrue();
+        assertThat(value[0]).isEqualTo(7);
+    }
+
+    @Test
+    void evictWhenFull() {
+        //given
+        OffHeapBalanceTable table = new OffHeapBalanceTable(2);
+        table.put("a", 1, 0);
+        table.put("b", 2, 0);
+
+        //when 가득 차도 새 키는 하나를 내보내고 들어간다
+        table.put("c", 3, 0);
+
+        //then
+        long[] value = new long[2];
+        assertThat(table.get("c", value)).isTrue();
+        assertThat(table.size()).isEqualTo(2);
+        assertThat(table.getEvicted()).isEqualTo(1);
+        assertThat(table.get("a", value) ^ table.get("b", value)).isTrue();
+    }
+
+    @Test
+    void keepRecentlyReadEntry() {
+        //given 한 번 내보내면서 시계 바늘이 모든 참조 표시를 지운다
+        OffHeapBalanceTable table = new OffHeapBalanceTable(16);
+        for (int i = 0; i < 16; i++) {
+            table.put("k" + i, i, 0);
+        }
+        table.put("x0", 0, 0);
+        long[] value = new long[2];
+        String hot = null;
+        for (int i = 0; i < 16 && hot == null; i++) {
+            if (table.get("k" + i, value)) {
+                hot = "k" + i;
+            }
+        }
+
+        //when 계속 조회되는 키가 있는 상태로 가득 찬 테이블에 새 키를 넣는다
+        for (int i = 1; i < 15; i++) {
+            assertThat(table.get(hot, value)).isTrue();
+            table.put("x" + i, i, 0);
+        }
+
+        //then 조회된 키는 남고 나머지가 내보내진다
+        assertThat(table.get(hot, value)).isTrue();
+        assertThat(table.size()).isEqualTo(16);
+        assertThat(table.getEvicted()).isEqualTo(15);
+    }
+
+    @Test
+    void rejectKeyTooLong() {
+        //given
+        OffHeapBalanceTable table = new OffHeapBalanceTable(2);
+
+        //when
+        table.put("x".repeat(OffHeapBalanceTable.KEY_WIDTH + 1), 4, 0);
+
+        //then
+        assertThat(table.size()).isEqualTo(0);
+        assertThat(table.getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void skipStalePut() {
+        //given 조회 시작 후 무효화가 들어온 경우
+        OffHeapBalanceTable table = new OffHeapBalanceTable(100);
+        long generation = table.generation("memberA");
+        table.remove("memberA");
+
+        //when
+        boolean stored = table.putIfGeneration("memberA", 10000, 0, generation);
+
+        //then
+        assertThat(stored).isFalse();
+        assertThat(table.get("memberA", new long[2])).isFalse();
+    }
+
+    @Test
+    void invalidateOnlyOwnStripe() {
+        //given 스트라이프가 여러 개가 되도록 크게 잡는다
+        OffHeapBalanceTable table = new OffHeapBalanceTable(100_000);
+        long generation = table.generation("memberA");
+        table.remove("memberA");
+        String other = null;
+        for (int i = 0; other == null; i++) {
+            if (table.generation("m" + i) == generation) {
+                other = "m" + i;
+            }
+        }
+
+        //when
+        boolean stale = table.putIfGeneration("memberA", 10000, 0, generation);
+        boolean fresh = table.putIfGeneration(other, 10000, 0, generation);
+
+        //then 다른 스트라이프의 키는 무효화와 상관없이 들어간다
+        assertThat(stale).isFalse();
+        assertThat(fresh).isTrue();
+    }
+
+    @Test
+    void multiByteKey() {
+        //given 한글 6자 = UTF-8 18 바이트
+        OffHeapBalanceTable table = new OffHeapBalanceTable(100);
+
+        //when
+        table.put("회원가나다라", 500, 0);
+
+        //then
+        long[] value = new long[2];
+        assertThat(table.get("회원가나다라", value)).isTrue();
+        assertThat(value[0]).isEqualTo(500);
+    }
+}
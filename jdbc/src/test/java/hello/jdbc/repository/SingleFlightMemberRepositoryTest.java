@@ -0,0 +1,93 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Slf4j
+class SingleFlightMemberRepositoryTest {
+
+    @Test
+    void coalesceConcurrentFindById() throws Exception {
+        //given 첫 조회가 끝나지 않도록 막아 둔다
+        CountDownLatch release = new CountDownLatch(1);
+        MemberRepository target = mock(MemberRepository.class);
+        when(target.findById(anyString())).thenAnswer(invocation -> {
+            release.await();
+            return new Member(invocation.getArgument(0), 10000);
+        });
+        SingleFlightMemberRepository repository = new SingleFlightMemberRepository(target);
+
+        //when 같은 회원을 동시에 조회
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Member>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> repository.findById("memberA")));
+        }
+        //나머지 7개 요청이 진행 중인 조회에 합류할 때까지 기다린다
+        long deadline = System.currentTimeMillis() + 5000;
+        while (repository.getCoalesced() < 7 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        long coalesced = repository.getCoalesced();
+        release.countDown();
+        for (Future<Member> future : futures) {
+            assertThat(future.get(5, TimeUnit.SECONDS).getMoney()).isEqualTo(10000);
+        }
+        executor.shutdown();
+
+        //then DB 조회는 한 번
+        verify(target, times(1)).findById("memberA");
+        assertThat(coalesced).isEqualTo(7);
+        assertThat(repository.getCalls()).isEqualTo(8);
+    }
+
+    @Test
+    void errorReleasesWaiters() throws Exception {
+        //given 첫 조회가 Error 로 끝난다
+        CountDownLatch release = new CountDownLatch(1);
+        MemberRepository target = mock(MemberRepository.class);
+        when(target.findById(anyString())).thenAnswer(invocation -> {
+            release.await();
+            throw new StackOverflowError("boom");
+        });
+        SingleFlightMemberRepository repository = new SingleFlightMemberRepository(target);
+
+        //when
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<Member>> futures = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            futures.add(executor.submit(() -> repository.findById("memberA")));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (repository.getCoalesced() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        //then 기다리던 요청도 막히지 않고 같은 Error 를 받는다
+        for (Future<Member> future : futures) {
+            assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(StackOverflowError.class);
+        }
+        executor.shutdown();
+    }
+}
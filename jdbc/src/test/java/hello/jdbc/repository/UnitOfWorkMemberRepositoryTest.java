@@ -0,0 +1,112 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.MemberSchema;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class UnitOfWorkMemberRepositoryTest {
+
+    public static final String MEMBER_A = "memberA";
+
+    UnitOfWorkMemberRepository repository;
+    TransactionTemplate txTemplate;
+
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        repository = new UnitOfWorkMemberRepository(new MemberRepositoryV4_2(dataSource), dataSource);
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterEach
+    void afterEach() {
+        repository.delete(MEMBER_A);
+    }
+
+    @Test
+    void coalesceAndFlushAtCommit() {
+        //given
+        repository.save(new Member(MEMBER_A, 10000));
+
+        //when 같은 회원을 세 번 변경
+        txTemplate.executeWithoutResult(status -> {
+            repository.update(MEMBER_A, 9000);
+            repository.update(MEMBER_A, 8000);
+            repository.update(MEMBER_A, 7000);
+            //플러시 전에도 트랜잭션 안의 조회는 마지막 값을 본다
+            assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(7000);
+        });
+
+        //then 커밋 직전에 한 row 만 보낸다
+        assertThat(repository.getCoalescedUpdates()).isEqualTo(2);
+        assertThat(repository.getFlushedRows()).isEqualTo(1);
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(7000);
+    }
+
+    @Test
+    void noFlushOnRollback() {
+        //given
+        repository.save(new Member(MEMBER_A, 10000));
+
+        //when
+        assertThatThrownBy(() -> txTemplate.executeWithoutResult(status -> {
+            repository.update(MEMBER_A, 8000);
+            throw new IllegalStateException("이체중 예외 발생");
+        })).isInstanceOf(IllegalStateException.class);
+
+        //then
+        assertThat(repository.getFlushedRows()).isEqualTo(0);
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void discardAfterSavepointRollback() {
+        //given
+        repository.save(new Member(MEMBER_A, 10000));
+
+        //when 세이브포인트 뒤에 기록한 변경을 세이브포인트로 되돌린다
+        txTemplate.executeWithoutResult(status -> {
+            repository.update(MEMBER_A, 9000);
+            SavepointSynchronization.triggerBeforeSavepoint();
+            Object savepoint = status.createSavepoint();
+            repository.update(MEMBER_A, 1000);
+            status.rollbackToSavepoint(savepoint);
+            SavepointSynchronization.triggerAfterRollbackToSavepoint();
+        });
+
+        //then 세이브포인트 전의 변경만 커밋된다
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(9000);
+    }
+
+    @Test
+    void versionAfterDeferredUpdate() {
+        //given
+        repository.save(new Member(MEMBER_A, 10000));
+
+        //when 기록만 한 변경 뒤에 조회한 버전으로 compare-and-set
+        txTemplate.executeWithoutResult(status -> {
+            repository.update(MEMBER_A, 9000);
+            Member member = repository.findById(MEMBER_A);
+            //then 플러시로 올라갈 버전을 보므로 충돌하지 않는다
+            assertThat(repository.update(MEMBER_A, member.getVersion(), 8000)).isEqualTo(1);
+        });
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+    }
+}
@@ -0,0 +1,94 @@
+package hello.jdbc.service;
+
+import hello.jdbc.MemberSchema;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.UnitOfWorkMemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 대량 이체 - 세이브포인트로 실패한 이체만 롤백
+ */
+@Slf4j
+class BulkTransferServiceTest {
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    private MemberRepository memberRepository;
+    private BulkTransferService bulkTransferService;
+
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
+    @BeforeEach
+    void before() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        bulkTransferService = new BulkTransferService(new DataSourceTransactionManager(dataSource), memberRepository, 2);
+    }
+
+    @AfterEach
+    void after() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+    }
+
+    @Test
+    void 실패한_이체만_롤백() {
+        //given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        //when 두번째 이체는 검증에서 실패한다
+        List<TransferResult> results = bulkTransferService.transferAll(List.of(
+            new Transfer(MEMBER_A, MEMBER_B, 1000),
+            new Transfer(MEMBER_A, MEMBER_EX, 1000),
+            new Transfer(MEMBER_B, MEMBER_A, 500)));
+
+        //then
+        assertThat(results).extracting("success").containsExactly(true, false, true);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(9500);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10500);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void 쓰기지연_변경은_세이브포인트_롤백에_섞이지_않는다() {
+        //given 바깥 트랜잭션에서 기록만 해 둔 변경이 있다
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        UnitOfWorkMemberRepository unitOfWork = new UnitOfWorkMemberRepository(new MemberRepositoryV5(dataSource), dataSource);
+        BulkTransferService service = new BulkTransferService(transactionManager, unitOfWork, 2);
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        //when 같은 트랜잭션에서 실패하는 이체를 세이브포인트로 되돌린다
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            unitOfWork.update(MEMBER_A, 5000);
+            List<TransferResult> results = service.transferAll(List.of(new Transfer(MEMBER_A, MEMBER_EX, 1000)));
+            assertThat(results).extracting("success").containsExactly(false);
+        });
+
+        //then 세이브포인트 전의 변경은 남고, 실패한 이체만 되돌아간다
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(5000);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+}
@@ -0,0 +1,133 @@
+package hello.jdbc.service;
+
+import hello.jdbc.MemberSchema;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 그룹 커밋 이체
+ */
+@Slf4j
+class GroupCommitTransferCoordinatorTest {
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    private MemberRepository memberRepository;
+    private GroupCommitTransferCoordinator coordinator;
+
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
+    @BeforeEach
+    void before() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        coordinator = new GroupCommitTransferCoordinator(
+            new DataSourceTransactionManager(dataSource), memberRepository, 16, 2000);
+    }
+
+    @AfterEach
+    void after() {
+        coordinator.close();
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+    }
+
+    @Test
+    void 여러_이체를_한번에_커밋() {
+        //given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 0));
+        memberRepository.save(new Member(MEMBER_EX, 0));
+
+        //when
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(coordinator.submit(MEMBER_A, MEMBER_B, 10));
+        }
+        CompletableFuture<Void> failed = coordinator.submit(MEMBER_A, MEMBER_EX, 10);
+        futures.forEach(CompletableFuture::join);
+
+        //then 실패한 이체만 예외로 완료되고 나머지는 커밋된다
+        assertThatThrownBy(failed::join).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(9500);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(500);
+
+        GroupCommitStats stats = coordinator.stats();
+        log.info("stats={}, averageBatchSize={}", stats, stats.averageBatchSize());
+        assertThat(stats.getTransfers()).isEqualTo(51);
+        assertThat(stats.getBatches()).isLessThan(51);
+    }
+
+    @Test
+    void 종료와_동시에_들어온_이체도_완료된다() throws Exception {
+        //given
+        memberRepository.save(new Member(MEMBER_A, 100000));
+        memberRepository.save(new Member(MEMBER_B, 0));
+
+        //when 다른 스레드가 계속 이체를 넣는 중에 종료한다
+        List<CompletableFuture<Void>> futures = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch submitting = new CountDownLatch(1);
+        Thread submitter = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                futures.add(coordinator.submit(MEMBER_A, MEMBER_B, 1));
+                submitting.countDown();
+            }
+        });
+        submitter.start();
+        submitting.await();
+        coordinator.close();
+        submitter.join();
+
+        //then 모든 future 가 성공이든 실패든 완료되어서 기다리는 호출자가 없다
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        assertThat(all.handle((result, e) -> true).get(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void Error_가_나도_커밋_스레드는_계속_돈다() throws Exception {
+        //given 첫 출금은 Error 로 끝난다
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        MemberRepository failing = mock(MemberRepository.class);
+        when(failing.withdraw(anyString(), anyInt())).thenThrow(new AssertionError("boom")).thenReturn(1);
+        when(failing.addMoney(anyString(), anyInt())).thenReturn(1);
+
+        try (GroupCommitTransferCoordinator errorCoordinator = new GroupCommitTransferCoordinator(
+            new DataSourceTransactionManager(dataSource), failing, 1, 0)) {
+            //when
+            CompletableFuture<Void> first = errorCoordinator.submit(MEMBER_A, MEMBER_B, 10);
+            CompletableFuture<Void> second = errorCoordinator.submit(MEMBER_A, MEMBER_B, 10);
+
+            //then 실패한 배치만 예외로 완료되고 다음 배치는 처리된다
+            assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(AssertionError.class);
+            second.get(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.MemberSchema;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_1;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 비관적 락 이체 - 정렬된 select ... for update
+ */
+@Slf4j
+class LockingTransferServiceTest {
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+
+    private HikariDataSource dataSource;
+    private MemberRepository memberRepository;
+    private LockingTransferService lockingTransferService;
+
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
+    @BeforeEach
+    void before() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        memberRepository = new MemberRepositoryV4_2(dataSource);
+        lockingTransferService = new LockingTransferService(new DataSourceTransactionManager(dataSource), memberRepository);
+    }
+
+    @AfterEach
+    void after() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        dataSource.close();
+    }
+
+    @Test
+    void 양방향_동시_이체() throws Exception {
+        //given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        //when A->B, B->A 를 동시에 실행한다
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            boolean aToB = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 20; j++) {
+                    if (aToB) {
+                        lockingTransferService.accountTransfer(MEMBER_A, MEMBER_B, 10);
+                    } else {
+                        lockingTransferService.accountTransfer(MEMBER_B, MEMBER_A, 10);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        //then 같은 금액을 주고받았으므로 잔액은 그대로다
+        log.info("retries={}, lockWait={}ms, backoff={}ms", lockingTransferService.getRetries(),
+            lockingTransferService.getLockWaitMillis(), lockingTransferService.getBackoffMillis());
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void 감싼_락_예외도_재시도한다() throws Exception {
+        //given V4_1 은 락 타임아웃을 MyDbException 으로 감싸서 던진다
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        HikariDataSource shortLockDataSource = new HikariDataSource();
+        shortLockDataSource.setJdbcUrl(URL);
+        shortLockDataSource.setUsername(USERNAME);
+        shortLockDataSource.setPassword(PASSWORD);
+        shortLockDataSource.setConnectionInitSql("SET LOCK_TIMEOUT 100");
+        LockingTransferService service = new LockingTransferService(
+            new DataSourceTransactionManager(shortLockDataSource), new MemberRepositoryV4_1(shortLockDataSource), 10, 50);
+
+        //다른 트랜잭션이 memberA 의 row 락을 300ms 동안 잡고 있다
+        Connection holder = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+        holder.setAutoCommit(false);
+        PreparedStatement pstmt = holder.prepareStatement("select * from member where member_id=? for update");
+        pstmt.setString(1, MEMBER_A);
+        pstmt.executeQuery().close();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> release = executor.submit(() -> {
+            Thread.sleep(300);
+            holder.commit();
+            holder.close();
+            return null;
+        });
+
+        try {
+            //when
+            service.accountTransfer(MEMBER_A, MEMBER_B, 1000);
+            release.get();
+        } finally {
+            executor.shutdown();
+            shortLockDataSource.close();
+        }
+
+        //then 락 타임아웃을 재시도한 뒤 이체가 반영된다
+        assertThat(service.getRetries()).isGreaterThanOrEqualTo(1);
+        //타임아웃으로 끝난 대기(100ms)도 락 대기 시간에 들어간다
+        assertThat(service.getLockWaitMillis()).isGreaterThanOrEqualTo(100);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(9000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(11000);
+    }
+}
@@ -1,9 +1,11 @@
 package hello.jdbc.service;
 
+import hello.jdbc.MemberSchema;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.MemberRepositoryV1;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
@@ -24,6 +26,11 @@ class MemberServiceV1Test {
     private MemberRepositoryV1 memberRepository;
     private MemberServiceV1 memberService;
 
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
     @BeforeEach
     void before() {
         DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
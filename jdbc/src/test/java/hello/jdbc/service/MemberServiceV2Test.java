@@ -1,10 +1,12 @@
 package hello.jdbc.service;
 
+import hello.jdbc.MemberSchema;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.MemberRepositoryV2;
 import lombok.extern.slf4j.Slf4j;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
@@ -26,6 +28,11 @@ class MemberServiceV2Test {
     private MemberRepositoryV2 memberRepository;
     private MemberServiceV2 memberService;
 
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
     @BeforeEach
     void before() {
         DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
@@ -49,7 +56,7 @@ class MemberServiceV2Test {
         memberRepository.save(memberB);
 
         //when
-        //같은 커넥션을 사용하기 때문에 Start와 End 로그 사이에는 getConnection이 나오지 않는다
+        //같은 커넥션을 사용하기 때문에 Start와 End 사이에는 커넥션을 새로 얻지 않는다
         log.info("Start");
         memberService.accountTransfer(memberA.getMemberId(), memberB.getMemberId(), 2000);
         log.info("End");
@@ -73,7 +80,7 @@ class MemberServiceV2Test {
 
         //when
         //예외 발생
-        //같은 커넥션을 사용하기 때문에 Start와 End 로그 사이에는 getConnection이 나오지 않는다
+        //같은 커넥션을 사용하기 때문에 Start와 End 사이에는 커넥션을 새로 얻지 않는다
         log.info("Start");
         assertThatThrownBy(() -> memberService.accountTransfer(memberA.getMemberId(), memberEx.getMemberId(), 2000))
             .isInstanceOf(IllegalStateException.class);
@@ -1,16 +1,21 @@
 package hello.jdbc.service;
 
+import hello.jdbc.MemberSchema;
+import hello.jdbc.connection.DataSourceMetrics;
+import hello.jdbc.connection.InstrumentedDataSource;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.MemberRepositoryV3;
 import lombok.extern.slf4j.Slf4j;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.transaction.PlatformTransactionManager;
 
+import javax.sql.DataSource;
 import java.sql.SQLException;
 
 import static hello.jdbc.connection.ConnectionConst.*;
@@ -28,9 +33,17 @@ class MemberServiceV3_2Test {
     private MemberRepositoryV3 memberRepository;
     private MemberServiceV3_2 memberService;
 
+    private final DataSourceMetrics metrics = new DataSourceMetrics();
+
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
     @BeforeEach
     void before() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        //커넥션 획득, SQL 실행, 커밋/롤백 시간을 기록한다
+        DataSource dataSource = new InstrumentedDataSource(new DriverManagerDataSource(URL, USERNAME, PASSWORD), metrics);
         memberRepository = new MemberRepositoryV3(dataSource);
 
         PlatformTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
@@ -42,6 +55,7 @@ class MemberServiceV3_2Test {
         memberRepository.delete(MEMBER_A);
         memberRepository.delete(MEMBER_B);
         memberRepository.delete(MEMBER_EX);
+        log.info("metrics\n{}", metrics.summary());
     }
 
     @Test
@@ -53,7 +67,7 @@ class MemberServiceV3_2Test {
         memberRepository.save(memberB);
 
         //when
-        //같은 커넥션을 사용하기 때문에 Start와 End 로그 사이에는 getConnection이 나오지 않는다
+        //같은 커넥션을 사용하기 때문에 Start와 End 사이에는 커넥션을 새로 얻지 않는다
         log.info("Start");
         memberService.accountTransfer(memberA.getMemberId(), memberB.getMemberId(), 2000);
         log.info("End");
@@ -77,7 +91,7 @@ class MemberServiceV3_2Test {
 
         //when
         //예외 발생
-        //같은 커넥션을 사용하기 때문에 Start와 End 로그 사이에는 getConnection이 나오지 않는다
+        //같은 커넥션을 사용하기 때문에 Start와 End 사이에는 커넥션을 새로 얻지 않는다
         log.info("Start");
         assertThatThrownBy(() -> memberService.accountTransfer(memberA.getMemberId(), memberEx.getMemberId(), 2000))
             .isInstanceOf(IllegalStateException.class);
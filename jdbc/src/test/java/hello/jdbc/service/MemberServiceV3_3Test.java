@@ -94,7 +94,7 @@ class MemberServiceV3_3Test {
         memberRepository.save(memberB);
 
         //when
-        //같은 커넥션을 사용하기 때문에 Start와 End 로그 사이에는 getConnection이 나오지 않는다
+        //같은 커넥션을 사용하기 때문에 Start와 End 사이에는 커넥션을 새로 얻지 않는다
         log.info("Start");
         memberService.accountTransfer(memberA.getMemberId(), memberB.getMemberId(), 2000);
         log.info("End");
@@ -118,7 +118,7 @@ class MemberServiceV3_3Test {
 
         //when
         //예외 발생
-        //같은 커넥션을 사용하기 때문에 Start와 End 로그 사이에는 getConnection이 나오지 않는다
+        //같은 커넥션을 사용하기 때문에 Start와 End 사이에는 커넥션을 새로 얻지 않는다
         log.info("Start");
         assertThatThrownBy(() -> memberService.accountTransfer(memberA.getMemberId(), memberEx.getMemberId(), 2000))
             .isInstanceOf(IllegalStateException.class);
@@ -0,0 +1,130 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 증감 update 이체 - 동시 이체에서 갱신 유실이 없는지 확인
+ */
+@Slf4j
+@SpringBootTest
+class MemberServiceV4ConcurrencyTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+
+    static final int THREADS = 64;
+    static final int TRANSFERS_PER_THREAD = 20;
+
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private MemberServiceV4 memberService;
+
+    @TestConfiguration
+    static class TestConfig {
+
+        private final DataSource dataSource;
+
+        public TestConfig(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV5(dataSource);
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+    }
+
+    @AfterEach
+    void after() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+    }
+
+    @Test
+    @DisplayName("64개 스레드 동시 이체")
+    void concurrentTransfer() throws Exception {
+        //given
+        memberRepository.save(new Member(MEMBER_A, 100000));
+        memberRepository.save(new Member(MEMBER_B, 0));
+
+        //when
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < TRANSFERS_PER_THREAD; j++) {
+                    memberService.accountTransferDelta(MEMBER_A, MEMBER_B, 10);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        //then 모든 이체 금액이 정확히 반영된다
+        int transferred = THREADS * TRANSFERS_PER_THREAD * 10;
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(100000 - transferred);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(transferred);
+    }
+
+    @Test
+    @DisplayName("잔액 부족")
+    void insufficientBalance() {
+        //given
+        memberRepository.save(new Member(MEMBER_A, 1000));
+        memberRepository.save(new Member(MEMBER_B, 0));
+
+        //when
+        assertThatThrownBy(() -> memberService.accountTransferDelta(MEMBER_A, MEMBER_B, 2000))
+            .isInstanceOf(IllegalStateException.class);
+
+        //then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(1000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("음수 금액")
+    void negativeAmount() {
+        //given
+        memberRepository.save(new Member(MEMBER_A, 1000));
+        memberRepository.save(new Member(MEMBER_B, 0));
+
+        //when 음수 이체는 B 에서 A 로 돈을 옮기게 되므로 거부한다
+        assertThatThrownBy(() -> memberService.accountTransferDelta(MEMBER_A, MEMBER_B, -500))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> memberService.accountTransferOptimistic(MEMBER_A, MEMBER_B, -500))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        //then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(1000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(0);
+    }
+}
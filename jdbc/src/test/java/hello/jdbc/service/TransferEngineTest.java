@@ -0,0 +1,98 @@
+package hello.jdbc.service;
+
+import hello.jdbc.MemberSchema;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 단일 SQL 이체 엔진
+ */
+@Slf4j
+class TransferEngineTest {
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+
+    private MemberRepository memberRepository;
+    private DriverManagerDataSource dataSource;
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeAll
+    static void migrate() {
+        MemberSchema.migrate();
+    }
+
+    @BeforeEach
+    void before() {
+        dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterEach
+    void after() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+    }
+
+    @ParameterizedTest
+    @EnumSource(TransferEngine.Mode.class)
+    void 정상_이체(TransferEngine.Mode mode) {
+        //given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        TransferEngine engine = new TransferEngine(dataSource, transactionManager, mode);
+
+        //when
+        engine.transfer(MEMBER_A, MEMBER_B, 2000);
+
+        //then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+    }
+
+    @ParameterizedTest
+    @EnumSource(TransferEngine.Mode.class)
+    void 잔액_부족(TransferEngine.Mode mode) {
+        //given
+        memberRepository.save(new Member(MEMBER_A, 1000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        TransferEngine engine = new TransferEngine(dataSource, transactionManager, mode);
+
+        //when
+        assertThatThrownBy(() -> engine.transfer(MEMBER_A, MEMBER_B, 2000))
+            .isInstanceOf(IllegalStateException.class);
+
+        //then 입금 쪽도 롤백된다
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(1000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    @ParameterizedTest
+    @EnumSource(TransferEngine.Mode.class)
+    void 받는_회원_없음(TransferEngine.Mode mode) {
+        //given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        TransferEngine engine = new TransferEngine(dataSource, transactionManager, mode);
+
+        //when
+        assertThatThrownBy(() -> engine.transfer(MEMBER_A, MEMBER_B, 2000))
+            .isInstanceOf(IllegalStateException.class);
+
+        //then 출금도 롤백된다
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+    }
+}
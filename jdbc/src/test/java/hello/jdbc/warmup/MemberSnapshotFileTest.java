@@ -0,0 +1,96 @@
+package hello.jdbc.warmup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberSnapshotFileTest {
+
+    static final Clock NOW = Clock.fixed(Instant.parse("2024-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeAndRead() throws IOException {
+        //given
+        Path path = dir.resolve("snapshot.bin");
+        MemberSnapshotFile.write(path, List.of("memberA", "memberB", "회원"), NOW);
+
+        //when
+        List<String> memberIds = MemberSnapshotFile.read(path, Duration.ofHours(1), NOW).orElseThrow();
+
+        //then
+        assertThat(memberIds).containsExactly("memberA", "memberB", "회원");
+    }
+
+    @Test
+    void discardOldSnapshot() throws IOException {
+        //given
+        Path path = dir.resolve("snapshot.bin");
+        MemberSnapshotFile.write(path, List.of("memberA"), NOW);
+
+        //when 두 시간 뒤에 읽는다
+        Clock later = Clock.offset(NOW, Duration.ofHours(2));
+
+        //then
+        assertThat(MemberSnapshotFile.read(path, Duration.ofHours(1), later)).isEmpty();
+    }
+
+    @Test
+    void discardCorruptSnapshot() throws IOException {
+        //given
+        Path path = dir.resolve("snapshot.bin");
+        MemberSnapshotFile.write(path, List.of("memberA"), NOW);
+
+        //when 본문 한 바이트를 바꾼다
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(MemberSnapshotFile.HEADER_SIZE + 2);
+            file.write('X');
+        }
+
+        //then CRC 가 맞지 않으므로 버린다
+        assertThat(MemberSnapshotFile.read(path, Duration.ofHours(1), NOW)).isEmpty();
+    }
+
+    @Test
+    void discardCorruptHeader() throws IOException {
+        //given
+        Path path = dir.resolve("snapshot.bin");
+        MemberSnapshotFile.write(path, List.of("memberA", "memberB"), NOW);
+
+        //when 헤더의 count 를 바꾼다
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(16);
+            file.writeInt(1_000_000);
+        }
+
+        //then 헤더도 CRC 에 포함되므로 버린다
+        assertThat(MemberSnapshotFile.read(path, Duration.ofHours(1), NOW)).isEmpty();
+    }
+
+    @Test
+    void discardFutureSnapshot() throws IOException {
+        //given 시계가 앞서 있던 서버에서 쓴 파일
+        Path path = dir.resolve("snapshot.bin");
+        MemberSnapshotFile.write(path, List.of("memberA"), Clock.offset(NOW, Duration.ofDays(1)));
+
+        //then 나이가 음수이므로 maxAge 와 상관없이 버린다
+        assertThat(MemberSnapshotFile.read(path, Duration.ofHours(1), NOW)).isEmpty();
+    }
+
+    @Test
+    void missingFile() throws IOException {
+        assertThat(MemberSnapshotFile.read(dir.resolve("none.bin"), Duration.ofHours(1), NOW)).isEmpty();
+    }
+}
@@ -0,0 +1,83 @@
+package hello.jdbc.warmup;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.CachingMemberRepository;
+import hello.jdbc.repository.MemberRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MemberSnapshotWarmerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void dumpAndWarmUp() throws IOException {
+        //given 실행 중에 캐시에 올라온 회원을 스냅샷으로 저장한다
+        Path path = dir.resolve("snapshot.bin");
+        MemberRepository before = mock(MemberRepository.class);
+        when(before.findById("memberA")).thenReturn(new Member("memberA", 10000));
+        CachingMemberRepository running = new CachingMemberRepository(before, 100, Duration.ofMinutes(1));
+        running.findById("memberA");
+        new MemberSnapshotWarmer(running, before, path, Duration.ofHours(1), Duration.ofMinutes(5), 100).dump();
+
+        //when 재시작 후 워밍업
+        MemberRepository target = mock(MemberRepository.class);
+        when(target.findByIds(anyCollection())).thenReturn(Map.of("memberA", new Member("memberA", 8000)));
+        CachingMemberRepository cache = new CachingMemberRepository(target, 100, Duration.ofMinutes(1));
+        int loaded = new MemberSnapshotWarmer(cache, target, path, Duration.ofHours(1), Duration.ofMinutes(5), 100).warmUp();
+
+        //then 잔액은 DB 에서 다시 읽은 값이고, 첫 조회부터 캐시에서 처리된다
+        assertThat(loaded).isEqualTo(1);
+        assertThat(cache.findById("memberA").getMoney()).isEqualTo(8000);
+        assertThat(cache.hottestMemberIds(10)).containsExactly("memberA");
+        verify(target, never()).findById("memberA");
+    }
+
+    @Test
+    void noSnapshot() {
+        //given
+        MemberRepository target = mock(MemberRepository.class);
+        CachingMemberRepository cache = new CachingMemberRepository(target, 100, Duration.ofMinutes(1));
+
+        //when 파일이 없으면 아무것도 하지 않는다
+        int loaded = new MemberSnapshotWarmer(cache, target, dir.resolve("none.bin"),
+            Duration.ofHours(1), Duration.ofMinutes(5), 100).warmUp();
+
+        //then
+        assertThat(loaded).isZero();
+        verify(target, never()).findByIds(anyCollection());
+    }
+
+    @Test
+    void warmUpFailure() throws IOException {
+        //given
+        Path path = dir.resolve("snapshot.bin");
+        MemberSnapshotFile.write(path, List.of("memberA"), Clock.systemUTC());
+        MemberRepository target = mock(MemberRepository.class);
+        when(target.findByIds(anyCollection())).thenThrow(new DataAccessResourceFailureException("DB 연결 실패"));
+        CachingMemberRepository cache = new CachingMemberRepository(target, 100, Duration.ofMinutes(1));
+
+        //when DB 조회가 실패해도 예외 없이 끝난다
+        int loaded = new MemberSnapshotWarmer(cache, target, path,
+            Duration.ofHours(1), Duration.ofMinutes(5), 100).warmUp();
+
+        //then
+        assertThat(loaded).isZero();
+    }
+}